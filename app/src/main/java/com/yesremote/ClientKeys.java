@@ -0,0 +1,114 @@
+package com.yesremote;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+
+import com.yesremote.core.SelfSignedCert;
+
+/**
+ * מפתחות client לכל TV. יצירת RSA-2048 לוקחת שניות בטלפון, אז היא רצה מראש
+ * על executor ברקע - ברגע שה-discovery מוצא TV שעוד לא עשינו איתו pairing -
+ * וה-pairing רק אוסף את התוצאה המוכנה.
+ */
+final class ClientKeys {
+    private static final String TAG = "ClientKeys";
+    private static final String CN  = "atvremote";
+
+    static final class Material {
+        final PrivateKey      key;
+        final X509Certificate cert;
+        final byte[]          keyBytes;   // PKCS#8
+        final byte[]          certBytes;  // DER
+        final long            genMs;
+
+        Material(PrivateKey key, X509Certificate cert, long genMs) throws Exception {
+            this.key = key;
+            this.cert = cert;
+            this.keyBytes = key.getEncoded();
+            this.certBytes = cert.getEncoded();
+            this.genMs = genMs;
+        }
+
+        KeyManager[] keyManagers() throws Exception {
+            KeyStore ks = KeyStore.getInstance("PKCS12");
+            ks.load(null, null);
+            ks.setKeyEntry("k", key, new char[0], new X509Certificate[]{cert});
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(ks, new char[0]);
+            return kmf.getKeyManagers();
+        }
+    }
+
+    private static final ExecutorService exec = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ClientKeys-gen");
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.setDaemon(true);
+        return t;
+    });
+    private static final SecureRandom rnd = new SecureRandom();
+    // host -> מפתח בהכנה/מוכן; spare = מפתח שעוד לא שויך (ל-IP שהוקלד ידנית)
+    private static final Map<String, Future<Material>> byHost = new HashMap<>();
+    private static Future<Material> spare;
+
+    private ClientKeys() {}
+
+    /** מתחיל ליצור מפתח ל-host אם אין כבר אחד. */
+    static synchronized void prepare(String host) {
+        if (byHost.containsKey(host)) return;
+        if (spare != null) { byHost.put(host, spare); spare = null; return; }
+        byHost.put(host, exec.submit(ClientKeys::generate));
+    }
+
+    /** מפתח רזרבי ל-TV שלא נמצא ב-discovery. */
+    static synchronized void prepareSpare() {
+        if (spare == null) spare = exec.submit(ClientKeys::generate);
+    }
+
+    /**
+     * המפתח של host - מיידי אם prepare כבר רץ. נשאר שמור עד forget, כך שניסיון
+     * pairing חוזר משתמש באותו מפתח. נקרא מ-thread רקע בלבד (עלול לחכות).
+     */
+    static Material get(String host) throws Exception {
+        Future<Material> f;
+        synchronized (ClientKeys.class) {
+            if (!byHost.containsKey(host)) prepare(host);
+            f = byHost.get(host);
+        }
+        long t0 = SystemClock.uptimeMillis();
+        boolean ready = f.isDone();
+        try {
+            Material m = f.get();
+            if (!ready) Log.w(TAG, "pairing waited " + (SystemClock.uptimeMillis() - t0) + "ms for key " + host);
+            return m;
+        } catch (Exception e) {
+            synchronized (ClientKeys.class) { if (byHost.get(host) == f) byHost.remove(host); }
+            throw e;
+        }
+    }
+
+    /** אחרי pairing מוצלח המפתח שמור ב-CredentialStore - אין צורך להחזיק אותו כאן. */
+    static synchronized void forget(String host) { byHost.remove(host); }
+
+    private static Material generate() throws Exception {
+        long t0 = SystemClock.uptimeMillis();
+        KeyPair kp = SelfSignedCert.generateKeyPair(rnd);
+        X509Certificate cert = SelfSignedCert.create(kp, CN, rnd);
+        long ms = SystemClock.uptimeMillis() - t0;
+        Log.d(TAG, "generated key in " + ms + "ms");
+        return new Material(kp.getPrivate(), cert, ms);
+    }
+}
@@ -0,0 +1,351 @@
+package com.yesremote;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.yesremote.core.FrameBuffer;
+import com.yesremote.core.KeyFrames;
+
+/**
+ * Writer יחיד לכל חיבור: הוא היחיד שנוגע ב-OutputStream.
+ * פקודות (מקשים, pong, handshake) נכנסות לתור חסום ונכתבות לפי הסדר,
+ * ו-keepalive וחזרות של מקש מוחזק נשלחים מאותו thread - בלי thread חדש ללחיצה
+ * ובלי טיימרים ב-UI.
+ */
+final class ConnectionWriter {
+    private static final String TAG        = "TvClient";
+    private static final int    QUEUE_CAP  = 64;
+    // זמן בין press ל-release של מקש (PRESS_PAIR בלבד)
+    private static final long   RELEASE_MS = 80;
+    // מקש מוחזק משתחרר לבד אחרי זמן זה (ACTION_UP שאבד)
+    private static final long   HOLD_MAX_MS = 30_000;
+
+    /** לחיצה: מסגרת SHORT אחת, או START_LONG + END_LONG אחרי RELEASE_MS (לטלוויזיות שמתעלמות מ-SHORT). */
+    static final int PRESS_SHORT = 0, PRESS_PAIR = 1;
+    /** החזקה: SHORT חוזר בקצב קבוע מה-writer, או START_LONG עד השחרור וה-TV חוזר בעצמו. */
+    static final int HOLD_REPEAT = 0, HOLD_STREAM = 1;
+
+    private static final int C_KEY = 0, C_RAW = 1, C_SEQ = 2, C_PONG = 3, C_STOP = 4,
+                             C_HOLD = 5, C_RELEASE = 6, C_BURST = 7, C_MACRO = 8, C_MACRO_CANCEL = 9,
+                             C_WAKE = 10;
+
+    private static final class Cmd {
+        final int    type;
+        final int    kc;
+        final long   val;
+        final byte[] raw;
+        final int[]  seq;
+        final long   tap;  // nanoTime של הלחיצה, 0 = לא ידוע
+        final Macro  macro;
+        long         enq;  // nanoTime של הכניסה לתור
+        Cmd(int type, int kc, long val, byte[] raw, int[] seq, long tap) {
+            this(type, kc, val, raw, seq, tap, null);
+        }
+        Cmd(int type, int kc, long val, byte[] raw, int[] seq, long tap, Macro macro) {
+            this.type = type; this.kc = kc; this.val = val; this.raw = raw; this.seq = seq; this.tap = tap;
+            this.macro = macro;
+        }
+    }
+    private static final Cmd STOP = new Cmd(C_STOP, -1, 0, null, null, 0);
+
+    private final OutputStream out;
+    private final Closeable    conn;
+    private final long         keepaliveMs;
+    private final BlockingQueue<Cmd> queue = new ArrayBlockingQueue<>(QUEUE_CAP);
+    private final Thread       thread;
+    // באפר כתיבה של ה-writer - כל flush הוא write אחד (רשומת TLS אחת)
+    private final FrameBuffer buf = new FrameBuffer(256);
+    private volatile long      repeatGapMs = RELEASE_MS;
+    private volatile int       pressMode = PRESS_SHORT, holdMode = HOLD_REPEAT;
+    private volatile long      repeatDelayMs = 400, repeatIntervalMs = 100;
+    private volatile byte[]    keepalive;  // null = keepalive כבוי
+    private volatile boolean   closed = false;
+    private volatile String    runningMacro;  // שם המאקרו שרץ, null = אין
+
+    /** @param conn נסגר אם כתיבה נכשלת, כדי שלולאת הקריאה תצא ותפעיל reconnect */
+    ConnectionWriter(OutputStream out, Closeable conn, long keepaliveMs) {
+        this.out = out;
+        this.conn = conn;
+        this.keepaliveMs = keepaliveMs;
+        this.thread = new Thread(this::loop, "TvClient-writer");
+    }
+
+    void start() { thread.start(); }
+
+    /** מתחיל לשלוח את msg כל keepaliveMs. */
+    void startKeepalive(byte[] msg) { setKeepalive(msg); }
+
+    /**
+     * null = keepalive כבוי: ה-writer ישן עד הפקודה הבאה בלי להתעורר כל keepaliveMs.
+     * ה-thread מתעורר מיד כדי לחשב מחדש את זמן ההמתנה.
+     */
+    void setKeepalive(byte[] msg) {
+        keepalive = msg;
+        offer(new Cmd(C_WAKE, -1, 0, null, null, 0));
+    }
+
+    /**
+     * השהייה בין שתי לחיצות זהות ברצף ("11") - שם ה-TV עלול לבלוע את השנייה.
+     * בין מקשים שונים אין השהייה. 0 = הכל ברשומה אחת.
+     */
+    void setRepeatGapMs(long ms) { repeatGapMs = Math.max(0, ms); }
+
+    void setPressMode(int mode) { pressMode = mode; }
+
+    /** @param delayMs זמן עד החזרה הראשונה, @param intervalMs זמן בין חזרות (HOLD_REPEAT) */
+    void setHoldMode(int mode, long delayMs, long intervalMs) {
+        holdMode = mode;
+        repeatDelayMs = Math.max(0, delayMs);
+        repeatIntervalMs = Math.max(20, intervalMs);
+    }
+
+    /** @param tapNs nanoTime של הלחיצה (Metrics.tap), 0 אם לא ידוע */
+    boolean sendKey(int kc, long tapNs)         { return offer(new Cmd(C_KEY, kc, 0, null, null, tapNs)); }
+    boolean sendRaw(byte[] msg)                 { return offer(new Cmd(C_RAW, -1, 0, msg, null, 0)); }
+    boolean sendSequence(int[] kcs, long tapNs) { return offer(new Cmd(C_SEQ, -1, 0, null, kcs, tapNs)); }
+    /** n לחיצות של אותו מקש ב-write אחד (למשל קפיצת עוצמה) */
+    boolean sendBurst(int kc, int n, long tapNs) { return offer(new Cmd(C_BURST, kc, n, null, null, tapNs)); }
+    /** תחילת החזקה (touch down) - הלחיצה הראשונה יוצאת מיד */
+    boolean holdKey(int kc, long tapNs)         { return offer(new Cmd(C_HOLD, kc, 0, null, null, tapNs)); }
+    /** סוף החזקה (touch up); מתעלם אם kc לא מוחזק */
+    boolean releaseKey(int kc)                  { return offer(new Cmd(C_RELEASE, kc, 0, null, null, 0)); }
+    /**
+     * מריץ מאקרו: הצעדים מתוזמנים בשעון של ה-writer (כמו keepalive), לא ב-Handler.
+     * צעדים בלי המתנה ביניהם יוצאים בכתיבה אחת. מאקרו חדש מחליף את הרץ.
+     */
+    boolean runMacro(Macro m)                   { return offer(new Cmd(C_MACRO, -1, 0, null, null, 0, m)); }
+    boolean cancelMacro()                       { return offer(new Cmd(C_MACRO_CANCEL, -1, 0, null, null, 0)); }
+    String  runningMacro()                      { return runningMacro; }
+    /** RemotePingResponse עם val1 של ה-ping - מקודד ישירות לבאפר של ה-writer */
+    boolean sendPong(long val1)                 { return offer(new Cmd(C_PONG, -1, val1, null, null, 0)); }
+
+    private boolean offer(Cmd c) {
+        if (closed) return false;
+        c.enq = System.nanoTime();
+        if (queue.offer(c)) {
+            if (c.tap != 0) Metrics.TAP_TO_ENQUEUE.recordNanos(c.enq - c.tap);
+            return true;
+        }
+        if (c.type == C_KEY || c.type == C_SEQ || c.type == C_HOLD || c.type == C_BURST) Metrics.keysDropped.incrementAndGet();
+        Log.w(TAG, "writer queue full, dropped kc=" + c.kc);
+        return false;
+    }
+
+    void close() {
+        closed = true;
+        if (runningMacro != null) Log.d(TAG, "macro " + runningMacro + " aborted (connection closed)");
+        runningMacro = null;
+        queue.clear();
+        queue.offer(STOP);
+    }
+
+    // מצב החזקה - thread ה-writer בלבד
+    private int     holdKc = -1;
+    private boolean holdStream;
+    private long    holdStart, nextRepeat = Long.MAX_VALUE;
+    // מצב מאקרו - thread ה-writer בלבד
+    private Macro   macro;
+    private int     macroStep;
+    private long    nextMacro = Long.MAX_VALUE;
+
+    private void loop() {
+        long nextKeepalive = Long.MAX_VALUE;  // נקבע כשה-keepalive מופעל
+        try {
+            while (!closed) {
+                long now = SystemClock.uptimeMillis();
+                byte[] ka = keepalive;
+                if (ka == null) nextKeepalive = Long.MAX_VALUE;
+                else if (nextKeepalive == Long.MAX_VALUE) nextKeepalive = now + keepaliveMs;
+                else if (now >= nextKeepalive) {
+                    buf.putFrame(ka); flush(); Log.d(TAG, "keepalive sent");
+                    nextKeepalive = now + keepaliveMs;
+                }
+                if (now >= nextRepeat) repeatHold(now);
+                if (now >= nextMacro) stepMacro(now);
+                long wake = Math.min(nextKeepalive, Math.min(nextRepeat, nextMacro));
+                Cmd c = wake == Long.MAX_VALUE ? queue.take() : queue.poll(wake - now, TimeUnit.MILLISECONDS);
+                Metrics.writerWakeups.incrementAndGet();
+                if (c == null) continue;
+                switch (c.type) {
+                    case C_STOP:    return;
+                    case C_WAKE:    break;
+                    case C_RAW:     buf.putFrame(c.raw); flush(); break;
+                    case C_SEQ:     endHold(-1); writeSequence(c); break;
+                    case C_BURST:   endHold(-1); writeBurst(c); break;
+                    case C_PONG:    writePong(c.val); flush(); break;
+                    case C_HOLD:    startHold(c); break;
+                    case C_RELEASE: endHold(c.kc); break;
+                    case C_MACRO:   startMacro(c.macro); break;
+                    case C_MACRO_CANCEL: stopMacro("cancelled"); break;
+                    default:        endHold(-1); writeKey(c);
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } catch (IOException e) {
+            if (!closed) {
+                Log.w(TAG, "writer err: " + e);
+                try { conn.close(); } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private void writeKey(Cmd c) throws IOException, InterruptedException {
+        long w0 = System.nanoTime();
+        if (pressMode == PRESS_SHORT) {
+            KeyFrames.write(c.kc, KeyFrames.DIR_SHORT, buf); flush();
+            recordKey(c, w0, System.nanoTime());
+        } else {
+            KeyFrames.write(c.kc, KeyFrames.DIR_START_LONG, buf); flush();
+            // ה-press יצא - מכאן ה-TV כבר מגיב
+            recordKey(c, w0, System.nanoTime());
+            Thread.sleep(RELEASE_MS);
+            KeyFrames.write(c.kc, KeyFrames.DIR_END_LONG, buf); flush();
+        }
+        Log.d(TAG, "sent kc=" + c.kc);
+    }
+
+    /** לחיצה אחת לבאפר (בלי flush): SHORT, או START_LONG+END_LONG צמודים ב-PRESS_PAIR. */
+    private void writePress(int kc) {
+        if (pressMode == PRESS_SHORT) {
+            KeyFrames.write(kc, KeyFrames.DIR_SHORT, buf);
+        } else {
+            KeyFrames.write(kc, KeyFrames.DIR_START_LONG, buf);
+            KeyFrames.write(kc, KeyFrames.DIR_END_LONG, buf);
+        }
+    }
+
+    private void writeBurst(Cmd c) throws IOException {
+        long w0 = System.nanoTime();
+        for (int i = 0; i < c.val; i++) writePress(c.kc);
+        flush();
+        recordKey(c, w0, System.nanoTime());
+        Metrics.keysSent.addAndGet(c.val - 1);
+        Log.d(TAG, "sent burst kc=" + c.kc + " n=" + c.val);
+    }
+
+    private void startHold(Cmd c) throws IOException {
+        endHold(-1);
+        long w0 = System.nanoTime();
+        holdKc = c.kc;
+        holdStream = holdMode == HOLD_STREAM;
+        holdStart = SystemClock.uptimeMillis();
+        KeyFrames.write(c.kc, holdStream ? KeyFrames.DIR_START_LONG : KeyFrames.DIR_SHORT, buf); flush();
+        recordKey(c, w0, System.nanoTime());
+        // STREAM: ה-TV חוזר בעצמו; מתעוררים רק לשחרור בטיחות
+        nextRepeat = holdStream ? holdStart + HOLD_MAX_MS : holdStart + repeatDelayMs;
+    }
+
+    private void repeatHold(long now) throws IOException {
+        if (now - holdStart >= HOLD_MAX_MS) {
+            Log.w(TAG, "hold timeout kc=" + holdKc);
+            endHold(-1);
+            return;
+        }
+        KeyFrames.write(holdKc, KeyFrames.DIR_SHORT, buf); flush();
+        Metrics.keysSent.incrementAndGet();
+        // בלי השלמת חזרות שפוספסו (GC, writer עמוס) - רק הקצב ממשיך
+        long iv = repeatIntervalMs;
+        nextRepeat = Math.max(nextRepeat + iv, now + iv / 2);
+    }
+
+    /** משחרר את המקש המוחזק; kc=-1 - כל מקש. */
+    private void endHold(int kc) throws IOException {
+        if (holdKc < 0 || (kc >= 0 && kc != holdKc)) return;
+        if (holdStream) { KeyFrames.write(holdKc, KeyFrames.DIR_END_LONG, buf); flush(); }
+        Log.d(TAG, "released kc=" + holdKc + " after " + (SystemClock.uptimeMillis() - holdStart) + "ms");
+        holdKc = -1;
+        nextRepeat = Long.MAX_VALUE;
+    }
+
+    private void writeSequence(Cmd c) throws IOException, InterruptedException {
+        int[] kcs = c.seq;
+        long gap = repeatGapMs;
+        long w0 = System.nanoTime();
+        boolean recorded = false;
+        for (int i = 0; i < kcs.length; i++) {
+            if (i > 0 && gap > 0 && kcs[i] == kcs[i-1]) {
+                flush();
+                if (!recorded) { recordKey(c, w0, System.nanoTime()); recorded = true; }
+                Thread.sleep(gap);
+            }
+            writePress(kcs[i]);
+        }
+        flush();
+        if (!recorded) recordKey(c, w0, System.nanoTime());
+        Metrics.keysSent.addAndGet(kcs.length - 1);
+        Log.d(TAG, "sent seq n=" + kcs.length);
+    }
+
+    private void startMacro(Macro m) throws IOException, InterruptedException {
+        if (macro != null) stopMacro("replaced by " + m.name);
+        endHold(-1);
+        macro = m;
+        macroStep = 0;
+        runningMacro = m.name;
+        Log.d(TAG, "macro " + m.name + " start, steps=" + m.size() + " planned=" + m.durationMs() + "ms");
+        long now = SystemClock.uptimeMillis();
+        nextMacro = now;
+        stepMacro(now);
+    }
+
+    /** שולח את הצעדים מ-macroStep עד ההמתנה הבאה, ומתזמן את ההמשך. */
+    private void stepMacro(long now) throws IOException, InterruptedException {
+        Macro m = macro;
+        int[] keys = m.keys, waits = m.waits;
+        long gap = repeatGapMs;
+        int first = macroStep, i = first;
+        while (true) {
+            // כמו ברצף: מקש זהה צמוד - השהייה קצרה כדי שה-TV לא יבלע אותו
+            if (i > first && gap > 0 && keys[i] == keys[i - 1]) { flush(); Thread.sleep(gap); }
+            writePress(keys[i]);
+            if (waits[i] > 0 || i == keys.length - 1) break;
+            i++;
+        }
+        flush();
+        Metrics.keysSent.addAndGet(i - first + 1);
+        if (i == keys.length - 1) { stopMacro("done"); return; }
+        macroStep = i + 1;
+        // יחסית לזמן המתוכנן ולא לסוף הכתיבה - בלי סחיפה מצטברת; באיחור - מיד
+        nextMacro = Math.max(nextMacro + waits[i], now);
+    }
+
+    private void stopMacro(String why) {
+        if (macro == null) return;
+        Log.d(TAG, "macro " + macro.name + " " + why + " at step " + macroStep + "/" + macro.size());
+        macro = null;
+        runningMacro = null;
+        nextMacro = Long.MAX_VALUE;
+    }
+
+    // זמני המקש הראשון בפקודה: המתנה בתור, write+flush, ומהלחיצה עד ה-flush
+    private static void recordKey(Cmd c, long w0, long flushed) {
+        Metrics.QUEUE_WAIT.recordNanos(w0 - c.enq);
+        Metrics.WRITE_FLUSH.recordNanos(flushed - w0);
+        Metrics.TAP_TO_FLUSH.recordNanos(flushed - (c.tap != 0 ? c.tap : c.enq));
+        Metrics.keysSent.incrementAndGet();
+    }
+
+    private void writePong(long val1) {
+        // RemoteMessage.remote_ping_response = field 9 (0x4A) { val1 = field 1 }
+        int inner = 1 + FrameBuffer.varintSize(val1);
+        buf.putVarint(1 + FrameBuffer.varintSize(inner) + inner);
+        buf.putByte(0x4A);
+        buf.putVarint(inner);
+        buf.putByte(0x08); buf.putVarint(val1);
+    }
+
+    private void flush() throws IOException {
+        FrameCapture.stream(FrameCapture.SRC_REMOTE, FrameCapture.DIR_OUT, buf);
+        Metrics.bytesOut.addAndGet(buf.size());
+        buf.writeTo(out);
+        buf.reset();
+        out.flush();
+    }
+}
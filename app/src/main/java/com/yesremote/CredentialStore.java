@@ -0,0 +1,264 @@
+package com.yesremote;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+
+/**
+ * חומר ה-pairing (מפתח PKCS#8 + תעודה DER לכל TV) וה-IP האחרון, בקובץ בינארי אחד.
+ * הקובץ נטען פעם אחת ברקע לאינדקס בזיכרון; isPaired/savedIp/put/remove לא חוסמים ומתאימים
+ * ל-UI thread, ו-keyManagers מפענח את המפתח פעם אחת לכל TV ושומר את התוצאה.
+ * כתיבה לקובץ זמני, sync ו-rename - קובץ חצי כתוב לא נטען לעולם.
+ */
+final class CredentialStore {
+    private static final String TAG  = "CredentialStore";
+    private static final String FILE = "credentials.bin";
+    private static final int VERSION = 1;
+    // prefs ישנים (Base64 key_/cert_/paired_ ו-ip) - מיובאים פעם אחת ונמחקים
+    private static final String LEGACY_PREFS = "tvprefs";
+
+    private static final class Entry {
+        final byte[] key, cert;
+        final long   pairedAt;
+        KeyManager[] km;  // מפוענח בפעם הראשונה שצריך
+        Entry(byte[] key, byte[] cert, long pairedAt) { this.key = key; this.cert = cert; this.pairedAt = pairedAt; }
+    }
+
+    private static CredentialStore instance;
+
+    static synchronized CredentialStore get(Context ctx) {
+        if (instance == null) instance = new CredentialStore(ctx.getApplicationContext());
+        return instance;
+    }
+
+    private final Context ctx;
+    private final File file;
+    private final Map<String, Entry> byIp = new HashMap<>();
+    private String savedIp = "";
+    private boolean ipSet;
+    // put/remove לפני סוף הטעינה: גוברים על הקובץ, והשמירה נדחית לסוף load
+    private final Set<String> removed = new HashSet<>();
+    private boolean dirty;
+    private volatile boolean legacyPending;
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private final List<Runnable> onLoad = new ArrayList<>();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+
+    private CredentialStore(Context ctx) {
+        this.ctx = ctx;
+        this.file = new File(ctx.getFilesDir(), FILE);
+        io.execute(this::load);
+    }
+
+    boolean isLoaded() { return loaded.getCount() == 0; }
+
+    /** מריץ את r על ה-main thread אחרי שהקובץ נטען (מיד אם כבר נטען). */
+    void whenLoaded(Runnable r) {
+        synchronized (this) {
+            if (!isLoaded()) { onLoad.add(r); return; }
+        }
+        main.post(r);
+    }
+
+    /** לא חוסם. לפני שהטעינה הסתיימה מחזיר false - ראה whenLoaded. */
+    synchronized boolean isPaired(String ip) { return byIp.containsKey(ip); }
+
+    /** לא חוסם. "" אם אין או שעוד לא נטען. */
+    synchronized String savedIp() { return savedIp; }
+
+    /** לא חוסם; אם נקרא לפני סוף הטעינה - גובר על הערך מהקובץ. */
+    synchronized void setSavedIp(String ip) {
+        if (ip.equals(savedIp)) return;
+        savedIp = ip;
+        ipSet = true;
+        if (isLoaded()) saveAsync();
+    }
+
+    /** לא חוסם; אם נקרא לפני סוף הטעינה - גובר על הקובץ, ונשמר בסופה. */
+    void put(String ip, byte[] key, byte[] cert) {
+        synchronized (this) {
+            byIp.put(ip, new Entry(key.clone(), cert.clone(), System.currentTimeMillis()));
+            removed.remove(ip);
+            saveOrDefer();
+        }
+        TlsCache.invalidate(ip);  // context ישן מחזיק את המפתח הקודם
+    }
+
+    /** לא חוסם, כמו put - אפשר מה-UI thread. */
+    void remove(String ip) {
+        synchronized (this) {
+            boolean had = byIp.remove(ip) != null;
+            if (!isLoaded()) { removed.add(ip); dirty = true; }
+            else if (had) saveAsync();
+        }
+        TlsCache.invalidate(ip);
+    }
+
+    /** לפני סוף הטעינה אין לשמור - הקובץ היה נדרס ברשימה חלקית; load שומר בסופה. */
+    private void saveOrDefer() {
+        if (isLoaded()) saveAsync();
+        else dirty = true;
+    }
+
+    /** KeyManagers ל-TLS מול ip, או null אם אין pairing. עלול לחכות לטעינה - לא מה-UI thread. */
+    KeyManager[] keyManagers(String ip) {
+        awaitLoad();
+        Entry e;
+        synchronized (this) { e = byIp.get(ip); }
+        if (e == null) { Log.w(TAG, "no cert for " + ip); return null; }
+        synchronized (e) {
+            if (e.km == null) {
+                try {
+                    PrivateKey pk = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(e.key));
+                    X509Certificate cert = (X509Certificate) CertificateFactory.getInstance("X.509")
+                        .generateCertificate(new ByteArrayInputStream(e.cert));
+                    KeyStore ks = KeyStore.getInstance("PKCS12");
+                    ks.load(null, null);
+                    ks.setKeyEntry("k", pk, new char[0], new X509Certificate[]{cert});
+                    KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+                    kmf.init(ks, new char[0]);
+                    e.km = kmf.getKeyManagers();
+                } catch (Exception ex) { Log.e(TAG, "keyManagers", ex); return null; }
+            }
+            return e.km;
+        }
+    }
+
+    private void awaitLoad() {
+        try { loaded.await(); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    private void load() {
+        long t0 = System.nanoTime();
+        Map<String, Entry> m = new HashMap<>();
+        String ip = "";
+        boolean migrate = false;
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == VERSION) {
+                    ip = in.readUTF();
+                    int n = in.readInt();
+                    for (int i = 0; i < n; i++) {
+                        String host = in.readUTF();
+                        long at = in.readLong();
+                        m.put(host, new Entry(readBytes(in), readBytes(in), at));
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "load: " + e);
+                m.clear(); ip = "";
+            }
+        } else {
+            ip = importLegacy(m);
+            migrate = !m.isEmpty() || !ip.isEmpty();
+            legacyPending = migrate;
+        }
+        List<Runnable> run;
+        synchronized (this) {
+            for (Map.Entry<String, Entry> e : m.entrySet()) {
+                if (!removed.contains(e.getKey())) byIp.putIfAbsent(e.getKey(), e.getValue());
+            }
+            removed.clear();
+            if (!ipSet) savedIp = ip;
+            if (migrate || ipSet || dirty) saveAsync();
+            loaded.countDown();
+            run = new ArrayList<>(onLoad);
+            onLoad.clear();
+        }
+        Log.d(TAG, "loaded " + m.size() + " in " + (System.nanoTime() - t0) / 1000 + "us");
+        for (Runnable r : run) main.post(r);
+    }
+
+    private String importLegacy(Map<String, Entry> m) {
+        SharedPreferences p = ctx.getSharedPreferences(LEGACY_PREFS, 0);
+        Map<String, ?> all = p.getAll();
+        if (all.isEmpty()) return "";
+        for (String k : all.keySet()) {
+            if (!k.startsWith("paired_")) continue;
+            String ip = k.substring(7);
+            String kb = p.getString("key_" + ip, null), cb = p.getString("cert_" + ip, null);
+            if (kb == null || cb == null) continue;
+            try {
+                m.put(ip, new Entry(Base64.decode(kb, Base64.DEFAULT), Base64.decode(cb, Base64.DEFAULT), 0));
+            } catch (IllegalArgumentException e) { Log.w(TAG, "legacy " + ip + ": " + e); }
+        }
+        String ip = p.getString("ip", "");
+        Log.d(TAG, "imported " + m.size() + " from prefs");
+        return ip;
+    }
+
+    // נקרא כשה-lock מוחזק
+    private void saveAsync() {
+        final Map<String, Entry> snap = new HashMap<>(byIp);
+        final String ip = savedIp;
+        io.execute(() -> save(ip, snap));
+    }
+
+    private void save(String ip, Map<String, Entry> entries) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(VERSION);
+            out.writeUTF(ip);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry v = e.getValue();
+                out.writeUTF(e.getKey()); out.writeLong(v.pairedAt);
+                out.writeInt(v.key.length);  out.write(v.key);
+                out.writeInt(v.cert.length); out.write(v.cert);
+            }
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            Log.w(TAG, "save: " + e);
+            return;
+        }
+        if (!tmp.renameTo(file)) { Log.w(TAG, "rename failed"); return; }
+        // אחרי שהקובץ החדש במקום - ה-prefs הישנים מיותרים
+        if (legacyPending) {
+            legacyPending = false;
+            ctx.getSharedPreferences(LEGACY_PREFS, 0).edit().clear().apply();
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > 64 * 1024) throw new IOException("bad length " + n);
+        byte[] b = new byte[n];
+        in.readFully(b);
+        return b;
+    }
+}
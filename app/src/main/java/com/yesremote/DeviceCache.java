@@ -0,0 +1,163 @@
+package com.yesremote;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * מטמון מכשירים שנמצאו (שם, host, port, נראה לאחרונה) בקובץ בינארי קטן.
+ * מאפשר ל-MainActivity להציג מכשירים מיד בעלייה, לפני שה-NSD מוצא משהו.
+ * כתיבה לקובץ זמני ואז rename - קובץ חצי כתוב לא נטען לעולם.
+ * הטעינה רצה ברקע כמו ב-CredentialStore; put/remove לפני סופה גוברים על הקובץ.
+ */
+final class DeviceCache {
+    private static final String TAG  = "DeviceCache";
+    private static final String FILE = "devices.bin";
+    private static final int VERSION = 1;
+    // מכשיר שלא נראה שבוע - יוצא מהמטמון
+    static final long TTL_MS = 7L * 24 * 60 * 60 * 1000;
+
+    static final class Device {
+        final String name, host;
+        final int    port;
+        final long   lastSeen;
+        Device(String name, String host, int port, long lastSeen) {
+            this.name = name; this.host = host; this.port = port; this.lastSeen = lastSeen;
+        }
+    }
+
+    private static DeviceCache instance;
+
+    static synchronized DeviceCache get(Context ctx) {
+        if (instance == null) instance = new DeviceCache(new File(ctx.getApplicationContext().getFilesDir(), FILE));
+        return instance;
+    }
+
+    private final File file;
+    // לפי שם השירות ב-NSD
+    private final Map<String, Device> byName = new LinkedHashMap<>();
+    // הוסרו לפני סוף הטעינה - לא להחזיר אותם מהקובץ
+    private final Set<String> removed = new HashSet<>();
+    private boolean dirty;
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private final List<Runnable> onLoad = new ArrayList<>();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+
+    private DeviceCache(File file) {
+        this.file = file;
+        io.execute(this::load);
+    }
+
+    boolean isLoaded() { return loaded.getCount() == 0; }
+
+    /** מריץ את r על ה-main thread אחרי שהקובץ נטען (מיד אם כבר נטען). */
+    void whenLoaded(Runnable r) {
+        synchronized (this) {
+            if (!isLoaded()) { onLoad.add(r); return; }
+        }
+        main.post(r);
+    }
+
+    /** מכשירים שעוד בתוקף, מהחדש לישן. לא חוסם - לפני סוף הטעינה רק מה שנוסף מאז. */
+    synchronized List<Device> list() {
+        long now = System.currentTimeMillis();
+        List<Device> out = new ArrayList<>();
+        for (Device d : byName.values()) if (now - d.lastSeen <= TTL_MS) out.add(0, d);
+        return out;
+    }
+
+    synchronized void put(String name, String host, int port) {
+        byName.remove(name);
+        removed.remove(name);
+        byName.put(name, new Device(name, host, port, System.currentTimeMillis()));
+        saveOrDefer();
+    }
+
+    synchronized void remove(String name) {
+        boolean had = byName.remove(name) != null;
+        if (!isLoaded()) { removed.add(name); dirty = true; }
+        else if (had) saveAsync();
+    }
+
+    private void load() {
+        long t0 = System.nanoTime();
+        long now = System.currentTimeMillis();
+        List<Device> m = new ArrayList<>();
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == VERSION) {
+                    int n = in.readInt();
+                    for (int i = 0; i < n; i++) {
+                        Device d = new Device(in.readUTF(), in.readUTF(), in.readInt(), in.readLong());
+                        if (now - d.lastSeen <= TTL_MS) m.add(d);
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "load: " + e);
+                m.clear();
+            }
+        }
+        List<Runnable> run;
+        synchronized (this) {
+            // מה שנוסף בינתיים חדש יותר - נשאר בסוף, כלומר ראשון ב-list
+            Map<String, Device> fresh = new LinkedHashMap<>(byName);
+            byName.clear();
+            for (Device d : m) if (!fresh.containsKey(d.name) && !removed.contains(d.name)) byName.put(d.name, d);
+            byName.putAll(fresh);
+            removed.clear();
+            if (dirty) saveAsync();
+            loaded.countDown();
+            run = new ArrayList<>(onLoad);
+            onLoad.clear();
+        }
+        Log.d(TAG, "loaded " + m.size() + " in " + (System.nanoTime() - t0) / 1000 + "us");
+        for (Runnable r : run) main.post(r);
+    }
+
+    /** לפני סוף הטעינה אין לשמור - הקובץ היה נדרס ברשימה חלקית; load שומר בסופה. */
+    private void saveOrDefer() {
+        if (isLoaded()) saveAsync();
+        else dirty = true;
+    }
+
+    private void saveAsync() {
+        final List<Device> snap = new ArrayList<>(byName.values());
+        io.execute(() -> save(snap));
+    }
+
+    private void save(List<Device> devices) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(VERSION);
+            out.writeInt(devices.size());
+            for (Device d : devices) {
+                out.writeUTF(d.name); out.writeUTF(d.host);
+                out.writeInt(d.port); out.writeLong(d.lastSeen);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "save: " + e);
+            return;
+        }
+        if (!tmp.renameTo(file)) Log.w(TAG, "rename failed");
+    }
+}
@@ -0,0 +1,44 @@
+package com.yesremote;
+
+import android.os.Handler;
+
+/**
+ * אוסף ספרות שהוקלדו ברצף מהיר ושולח אותן כ-sequence אחד,
+ * כך שהחלפת ערוץ ("412") יוצאת ב-round trip אחד במקום שש כתיבות.
+ */
+final class DigitEntry {
+    /** חלון איסוף - ה-TV ממילא מחכה לספרה הבאה לפני שהוא מחליף ערוץ */
+    static final long WINDOW_MS = 500;
+    private static final int MAX_DIGITS = 8;
+
+    interface Sink { void sendSequence(int... kcs); }
+
+    private final Handler handler;
+    private final Sink    sink;
+    private final int[]   buf = new int[MAX_DIGITS];
+    private int n = 0;
+    private final Runnable flushRunnable = this::flush;
+
+    DigitEntry(Handler handler, Sink sink) { this.handler = handler; this.sink = sink; }
+
+    /** נקרא מה-thread של ה-handler בלבד. */
+    void add(int kc) {
+        if (n == buf.length) flush();
+        buf[n++] = kc;
+        handler.removeCallbacks(flushRunnable);
+        handler.postDelayed(flushRunnable, WINDOW_MS);
+    }
+
+    void flush() {
+        handler.removeCallbacks(flushRunnable);
+        if (n == 0) return;
+        int[] kcs = new int[n];
+        System.arraycopy(buf, 0, kcs, 0, n);
+        n = 0;
+        sink.sendSequence(kcs);
+    }
+
+    void cancel() { handler.removeCallbacks(flushRunnable); n = 0; }
+
+    static boolean isDigit(int kc) { return kc >= TvClient.KEY_0 && kc <= TvClient.KEY_9; }
+}
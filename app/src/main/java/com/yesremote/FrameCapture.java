@@ -0,0 +1,191 @@
+package com.yesremote;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.yesremote.core.CaptureFormat;
+import com.yesremote.core.FrameBuffer;
+import com.yesremote.core.FrameReader;
+
+/**
+ * הקלטת תעבורה (opt-in) מ-TvClient ו-TvPairing לקובץ בינארי.
+ * כבוי - בדיקת volatile אחת. דולק - ה-thread שקורא/כותב רק מעתיק את הבייטים
+ * לתור, ו-thread רקע כותב אותם. הקובץ הוא ring של SEGMENTS קטעים: כשקטע מתמלא
+ * עוברים לבא ודורסים את הישן ביותר, כך שההקלטה לא גדלה בלי סוף.
+ * הפורמט - CaptureFormat, והקריאה/replay - CaptureReader ו-CaptureReplay (ב-core, רצים מ-:mocktv).
+ */
+final class FrameCapture {
+    private static final String TAG = "FrameCapture";
+
+    static final int SRC_REMOTE = CaptureFormat.SRC_REMOTE, SRC_PAIRING = CaptureFormat.SRC_PAIRING;
+    static final int DIR_IN = CaptureFormat.DIR_IN, DIR_OUT = CaptureFormat.DIR_OUT;
+
+    static final int  SEGMENTS = CaptureFormat.SEGMENTS;
+    static final long SEGMENT_BYTES = 512 * 1024;
+    private static final int QUEUE_CAP = 256;
+
+    private static final class Rec {
+        final int    tag;     // (src << 1) | dir
+        final long   tNs;
+        final byte[] data;
+        final boolean stream; // data = כמה מסגרות עם varint length (מה-writer)
+        Rec(int tag, long tNs, byte[] data, boolean stream) {
+            this.tag = tag; this.tNs = tNs; this.data = data; this.stream = stream;
+        }
+    }
+
+    private static volatile FrameCapture active;
+    // ה-thread של ההקלטה האחרונה - הקלטה חדשה מחכה לו לפני שהיא מוחקת קטעים
+    private static Thread lastThread;
+    private static final AtomicLong dropped = new AtomicLong();
+
+    /** מתחיל הקלטה לתיקייה dir (capture-0.bin, capture-1.bin...). */
+    static synchronized void start(File dir) {
+        if (active != null) return;
+        if (!dir.isDirectory() && !dir.mkdirs()) { Log.w(TAG, "no dir " + dir); return; }
+        active = new FrameCapture(dir, lastThread);
+        lastThread = active.thread;
+        Log.d(TAG, "capture on: " + dir);
+    }
+
+    /** לא חוסם: ה-thread כותב את מה שכבר בתור, סוגר את הקטע ויוצא. */
+    static synchronized void stop() {
+        FrameCapture c = active;
+        if (c == null) return;
+        active = null;
+        c.stopped = true;
+        c.thread.interrupt();
+        Log.d(TAG, "capture off, dropped=" + dropped.get());
+    }
+
+    static boolean isOn() { return active != null; }
+
+    /** מסגרת אחת (payload בלי אורך) - למשל מ-FrameReader; ה-position לא זז. */
+    static void frame(int src, int dir, ByteBuffer m) {
+        FrameCapture c = active;
+        if (c == null) return;
+        byte[] b = new byte[m.remaining()];
+        if (m.hasArray()) System.arraycopy(m.array(), m.arrayOffset() + m.position(), b, 0, b.length);
+        else for (int i = 0; i < b.length; i++) b[i] = m.get(m.position() + i);
+        c.offer(new Rec(tag(src, dir), System.nanoTime(), b, false));
+    }
+
+    static void frame(int src, int dir, byte[] payload) {
+        FrameCapture c = active;
+        if (c == null) return;
+        c.offer(new Rec(tag(src, dir), System.nanoTime(), payload.clone(), false));
+    }
+
+    /** באפר כתיבה שלם (מסגרות עם אורך) - מפוצל למסגרות ב-thread הרקע. */
+    static void stream(int src, int dir, FrameBuffer buf) {
+        FrameCapture c = active;
+        if (c == null || buf.isEmpty()) return;
+        c.offer(new Rec(tag(src, dir), System.nanoTime(), buf.toByteArray(), true));
+    }
+
+    private static int tag(int src, int dir) { return CaptureFormat.tag(src, dir); }
+
+    private final File dir;
+    private final BlockingQueue<Rec> queue = new ArrayBlockingQueue<>(QUEUE_CAP);
+    private final Thread thread;
+    private final Thread prev;
+    private volatile boolean stopped;
+    private DataOutputStream out;
+    private long written, lastNs;
+    private int  segment;
+
+    private FrameCapture(File dir, Thread prev) {
+        this.dir = dir;
+        this.prev = prev;
+        thread = new Thread(this::loop, "FrameCapture");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private void offer(Rec r) {
+        if (!queue.offer(r)) dropped.incrementAndGet();
+    }
+
+    static File segmentFile(File dir, int i) { return CaptureFormat.segmentFile(dir, i); }
+
+    private void loop() {
+        try {
+            // ההקלטה הקודמת אולי עוד סוגרת קטע באותה תיקייה
+            if (prev != null) prev.join();
+            if (stopped) return;
+            // הקלטה חדשה מתחילה נקייה
+            for (int i = 0; i < SEGMENTS; i++) segmentFile(dir, i).delete();
+            open(0);
+            try {
+                while (!stopped) {
+                    writeRec(queue.take());
+                    // ה-flush רק כשהתור ריק - כתיבה אחת לכמה מסגרות
+                    if (queue.isEmpty()) out.flush();
+                }
+            } catch (InterruptedException ignored) {
+                // stop()
+            }
+            // מה שנכנס לתור לפני ה-stop
+            Rec r;
+            while ((r = queue.poll()) != null) writeRec(r);
+        } catch (InterruptedException ignored) {
+        } catch (IOException e) {
+            Log.w(TAG, "capture err: " + e);
+        } finally {
+            try { if (out != null) out.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private void writeRec(Rec r) throws IOException {
+        if (r.stream) writeStream(r); else write(r.tag, r.tNs, r.data, 0, r.data.length);
+    }
+
+    private void writeStream(Rec r) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(r.data);
+        while (b.hasRemaining()) {
+            int n = (int) FrameReader.readVarint(b);
+            if (n < 0 || n > b.remaining()) break;
+            write(r.tag, r.tNs, r.data, b.position(), n);
+            b.position(b.position() + n);
+        }
+    }
+
+    // רשומה - ראה CaptureFormat
+    private void write(int tag, long tNs, byte[] data, int off, int n) throws IOException {
+        if (written >= SEGMENT_BYTES) open((segment + 1) % SEGMENTS);
+        long dt = Math.max(0, (tNs - lastNs) / 1000);
+        lastNs = tNs;
+        out.writeByte(tag);
+        int k = varint(dt) + varint(n);
+        out.write(data, off, n);
+        written += 1 + k + n;
+    }
+
+    private int varint(long v) throws IOException {
+        int k = 1;
+        while ((v & ~0x7FL) != 0) { out.writeByte((int) ((v & 0x7F) | 0x80)); v >>>= 7; k++; }
+        out.writeByte((int) v);
+        return k;
+    }
+
+    // כותרת קטע - ראה CaptureFormat
+    private void open(int seg) throws IOException {
+        if (out != null) out.close();
+        segment = seg;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segmentFile(dir, seg)), 8192));
+        lastNs = System.nanoTime();
+        out.writeInt(CaptureFormat.MAGIC);
+        out.writeLong(System.currentTimeMillis());
+        out.writeLong(lastNs);
+        written = 20;
+    }
+}
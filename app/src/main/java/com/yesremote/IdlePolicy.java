@@ -0,0 +1,121 @@
+package com.yesremote;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * מתי החיבור ל-TV "נח": אחרי idleMs בלי קלט (קצר יותר כשהמסך כבוי) עוברים למצב זול -
+ * בלי keepalive, ואם closeSocket גם בלי socket. כל קלט, הדלקת מסך או פתיחת האפליקציה מעירים.
+ * הטיימר עצל: קלט רק מעדכן lastInput, והבדיקה בזמן היעד קובעת את עצמה מחדש אם היה קלט בינתיים -
+ * כך לחיצה לא עולה removeCallbacks/postDelayed. main thread בלבד.
+ */
+final class IdlePolicy {
+    private static final String TAG = "IdlePolicy";
+
+    static final long DEFAULT_IDLE_MS            = 10 * 60_000;
+    static final long DEFAULT_SCREEN_OFF_IDLE_MS = 60_000;
+
+    static final int ACTIVE = 0, QUIET = 1, CLOSED = 2;
+
+    interface Link {
+        /** בלי keepalive, החיבור נשאר */
+        void quiet();
+        /** סוגר את החיבור ועוצר reconnect */
+        void close();
+        /** חוזר מ-QUIET/CLOSED - keepalive, ובמידת הצורך חיבור מחדש */
+        void wake(int from);
+        /** משהו רץ בלי קלט (מאקרו) - לא נחים באמצע */
+        boolean busy();
+    }
+
+    private final Handler handler;
+    private final Link    link;
+    private long    idleMs = DEFAULT_IDLE_MS, screenOffIdleMs = DEFAULT_SCREEN_OFF_IDLE_MS;
+    private boolean closeSocket;
+    private boolean screenOn = true;
+    private int     state = ACTIVE;
+    private long    lastInput = SystemClock.uptimeMillis(), idleSince;
+    private long    checkAt;   // זמן הבדיקה המתוזמנת, 0 = אין
+    private final Runnable check = this::check;
+
+    IdlePolicy(Handler handler, Link link) {
+        this.handler = handler;
+        this.link = link;
+    }
+
+    /**
+     * @param idleMs          זמן בלי קלט עד מנוחה; 0 = אף פעם
+     * @param screenOffIdleMs אותו דבר כשהמסך כבוי (לא יותר מ-idleMs)
+     * @param closeSocket     במנוחה גם לסגור את ה-socket - חוסך את ה-ping של ה-TV, אבל
+     *                        הלחיצה הראשונה אחרי זה מחכה ל-TLS
+     */
+    void configure(long idleMs, long screenOffIdleMs, boolean closeSocket) {
+        this.idleMs = Math.max(0, idleMs);
+        this.screenOffIdleMs = Math.max(0, screenOffIdleMs);
+        this.closeSocket = closeSocket;
+        schedule();
+    }
+
+    int state() { return state; }
+
+    /** קלט מהמשתמש (מקש, טקסט, מאקרו, פתיחת האפליקציה) - מעיר לפני שהקלט נשלח. */
+    void input() {
+        lastInput = SystemClock.uptimeMillis();
+        wake();
+        schedule();
+    }
+
+    void screen(boolean on) {
+        screenOn = on;
+        if (on) { input(); return; }
+        schedule();
+    }
+
+    /** ה-Service נעצר - בלי מעברים נוספים. */
+    void stop() {
+        handler.removeCallbacks(check);
+        checkAt = 0;
+        if (state != ACTIVE) Metrics.idleMs.addAndGet(SystemClock.uptimeMillis() - idleSince);
+        state = ACTIVE;
+    }
+
+    private long limit() {
+        if (idleMs == 0) return 0;
+        return screenOn ? idleMs : Math.min(idleMs, screenOffIdleMs == 0 ? idleMs : screenOffIdleMs);
+    }
+
+    private void schedule() {
+        long limit = limit();
+        if (state != ACTIVE || limit == 0) { handler.removeCallbacks(check); checkAt = 0; return; }
+        long at = lastInput + limit;
+        // בדיקה מוקדמת יותר כבר מתוזמנת - היא תקבע את עצמה מחדש
+        if (checkAt != 0 && checkAt <= at) return;
+        handler.removeCallbacks(check);
+        checkAt = at;
+        handler.postAtTime(check, at);
+    }
+
+    private void check() {
+        checkAt = 0;
+        long limit = limit();
+        if (state != ACTIVE || limit == 0) return;
+        long now = SystemClock.uptimeMillis();
+        if (now - lastInput < limit) { schedule(); return; }
+        if (link.busy()) { lastInput = now; schedule(); return; }
+        state = closeSocket ? CLOSED : QUIET;
+        idleSince = now;
+        Metrics.idleEntries.incrementAndGet();
+        Log.d(TAG, "idle after " + (now - lastInput) / 1000 + "s, " + (state == CLOSED ? "closing" : "keepalive off"));
+        if (state == CLOSED) link.close(); else link.quiet();
+    }
+
+    private void wake() {
+        if (state == ACTIVE) return;
+        int from = state;
+        state = ACTIVE;
+        Metrics.idleMs.addAndGet(SystemClock.uptimeMillis() - idleSince);
+        Log.d(TAG, "wake from " + (from == CLOSED ? "closed" : "quiet"));
+        link.wake(from);
+    }
+}
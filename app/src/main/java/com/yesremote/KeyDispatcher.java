@@ -0,0 +1,84 @@
+package com.yesremote;
+
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * נקודת שליחה אחת למקשים מה-Activity, זמינה מהרגע שהכפתורים מחוברים.
+ * עד שה-bind ל-RemoteService מסתיים הלחיצות נשמרות בתור (עם TTL)
+ * וה-Service מופעל; ב-attach הן עוברות ל-Service לפי הסדר.
+ */
+final class KeyDispatcher {
+    private final Context ctx;
+    private final PendingCommands early = new PendingCommands();
+    private RemoteService service;  // main thread בלבד
+    private boolean started;
+
+    KeyDispatcher(Context ctx) { this.ctx = ctx; }
+
+    void attach(RemoteService s) {
+        service = s;
+        s.userPresent();
+        early.drain(s::sendKeys);
+    }
+
+    /** האפליקציה חזרה לחזית - מעיר את החיבור אם הוא במנוחה. */
+    void present() {
+        RemoteService s = service;
+        if (s != null) s.userPresent();
+    }
+
+    void detach() { service = null; }
+
+    /** @param tapNs Metrics.tap() של הלחיצה */
+    void send(int kc, long tapNs) { send(new int[]{kc}, tapNs); }
+
+    /** רצף (ספרות מ-DigitEntry) - בלי tap: ההמתנה לחלון האיסוף מכוונת, לא השהיה. */
+    void sendSequence(int... kcs) { send(kcs, 0); }
+
+    private void send(int[] kcs, long tapNs) {
+        if (kcs == null || kcs.length == 0) return;
+        StartupTrace.mark(StartupTrace.FIRST_KEY);
+        RemoteService s = service;
+        if (s != null) { s.sendKeys(kcs, tapNs); return; }
+        early.add(kcs.clone(), tapNs);
+        // ה-Service עולה ב-bind; startService מבטיח שהוא ימשיך לרוץ ויתחבר ל-IP השמור
+        if (!started) { started = true; ctx.startService(new Intent(ctx, RemoteService.class)); }
+    }
+
+    /** touch down; עד ה-attach - לחיצה רגילה בתור. */
+    void hold(int kc, long tapNs) {
+        RemoteService s = service;
+        if (s == null) { send(kc, tapNs); return; }
+        StartupTrace.mark(StartupTrace.FIRST_KEY);
+        s.holdKey(kc, tapNs);
+    }
+
+    /** טקסט לשדה ב-TV; לפני ה-attach אין לאן - false, ו-TextEntry שולח שוב ב-flush שאחרי ה-attach. */
+    boolean text(String t) {
+        RemoteService s = service;
+        if (s == null) return false;
+        s.sendText(t);
+        return true;
+    }
+
+    /** מאקרו שמור לפי שם; לפני ה-attach - דרך ה-Service, שמריץ אותו אחרי החיבור. */
+    void macro(String name) {
+        RemoteService s = service;
+        if (s != null) { s.runMacro(name); return; }
+        Intent i = new Intent(ctx, RemoteService.class);
+        i.setAction(RemoteService.ACTION_MACRO);
+        i.putExtra(RemoteService.EXTRA_MACRO, name);
+        ctx.startService(i);
+    }
+
+    void cancelMacro() {
+        RemoteService s = service;
+        if (s != null) s.cancelMacro();
+    }
+
+    void release(int kc) {
+        RemoteService s = service;
+        if (s != null) s.releaseKey(kc);
+    }
+}
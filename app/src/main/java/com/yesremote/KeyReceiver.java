@@ -3,27 +3,66 @@ package com.yesremote;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Build;
 import android.util.Log;
 
 /**
- * מקבל broadcasts מהווידג'ט ושולח פקודה ל-RemoteService.
- * BroadcastReceiver יכול לקרוא startService (לא FGS) - בטוח ב-Android 14.
+ * נקודת הכניסה של הווידג'ט (ושל broadcasts מבפנים): מקשים ומאקרו-ים.
+ * אם RemoteService כבר רץ - קריאה ישירה על ה-main thread, בלי Intent ל-Service
+ * ובלי onStartCommand. אחרת מפעילים אותו עם הפקודה.
  */
 public class KeyReceiver extends BroadcastReceiver {
     public static final String ACTION = "com.yesremote.ACTION_KEY";
     public static final String EXTRA_KEYCODE = "keycode";
+    // ספרה - נאספת עם הספרות הסמוכות ונשלחת כרצף אחד (DigitEntry)
+    public static final String EXTRA_DIGIT = "digit";
+    // מאקרו: EXTRA_MACRO = שם; בלי שם - הראשון ברשימה / עצירה (כפתור הווידג'ט)
+    public static final String ACTION_MACRO = "com.yesremote.ACTION_RUN_MACRO";
+    public static final String ACTION_MACRO_CANCEL = "com.yesremote.ACTION_CANCEL_MACRO";
+    public static final String EXTRA_MACRO = "macro";
     private static final String TAG = "KeyReceiver";
 
     @Override
     public void onReceive(Context ctx, Intent intent) {
-        if (!ACTION.equals(intent.getAction())) return;
+        String action = intent.getAction();
+        if (ACTION_MACRO.equals(action) || ACTION_MACRO_CANCEL.equals(action)) {
+            boolean cancel = ACTION_MACRO_CANCEL.equals(action);
+            String name = intent.getStringExtra(EXTRA_MACRO);
+            RemoteService s = RemoteService.running();
+            if (s != null) {
+                if (cancel) s.cancelMacro(); else s.runMacro(name);
+                return;
+            }
+            Intent si = new Intent(ctx, RemoteService.class);
+            si.setAction(cancel ? RemoteService.ACTION_MACRO_CANCEL : RemoteService.ACTION_MACRO);
+            if (name != null) si.putExtra(RemoteService.EXTRA_MACRO, name);
+            start(ctx, si);
+            return;
+        }
+        if (!ACTION.equals(action)) return;
         int kc = intent.getIntExtra(EXTRA_KEYCODE, -1);
         if (kc < 0) return;
-        Log.d(TAG, "Received key: " + kc);
-        // שלח ל-Service (startService - לא FGS - בטוח מכל context)
+        long tap = Metrics.tap();
+        boolean digit = intent.getBooleanExtra(EXTRA_DIGIT, false);
+
+        RemoteService s = RemoteService.running();
+        if (s != null) { s.widgetKey(kc, digit, tap); return; }
+
+        Log.d(TAG, "service not running, starting for kc=" + kc);
         Intent si = new Intent(ctx, RemoteService.class);
-        si.setAction(RemoteService.ACTION);
+        si.setAction(digit ? RemoteService.ACTION_DIGIT : RemoteService.ACTION);
         si.putExtra(RemoteService.EXTRA, kc);
-        ctx.startService(si);  // ← לא startForegroundService!
+        start(ctx, si);
+    }
+
+    private static void start(Context ctx, Intent si) {
+        try {
+            ctx.startService(si);
+        } catch (IllegalStateException e) {
+            // Android 8+ ברקע; לחיצה על ווידג'ט מתירה foreground service
+            if (Build.VERSION.SDK_INT < 26) throw e;
+            si.putExtra(RemoteService.EXTRA_FOREGROUND, true);
+            ctx.startForegroundService(si);
+        }
     }
 }
@@ -0,0 +1,57 @@
+package com.yesremote;
+
+/**
+ * כל מה שה-UI, הווידג'ט וההתראה מציגים: מצב החיבור, ה-IP, השגיאה האחרונה ומצב ה-TV.
+ * immutable, כמו TvState - StateBus מעביר רק את הערך האחרון, ו-equals קובע אם יש מה לצייר.
+ */
+final class LinkState {
+    static final int OFF = 0, CONNECTING = 1, CONNECTED = 2, RESTING = 3, ERROR = 4;
+
+    static final LinkState INITIAL = new LinkState(OFF, "", null, TvState.UNKNOWN);
+
+    final int     link;
+    final String  ip;
+    final String  error;   // רק ב-ERROR
+    final TvState tv;
+
+    private LinkState(int link, String ip, String error, TvState tv) {
+        this.link = link; this.ip = ip; this.error = error; this.tv = tv;
+    }
+
+    boolean isConnected() { return link == CONNECTED; }
+
+    LinkState withLink(int l, String ip) {
+        if (l == link && ip.equals(this.ip) && error == null) return this;
+        return new LinkState(l, ip, null, tv);
+    }
+
+    LinkState withError(String e, String ip) {
+        if (link == ERROR && ip.equals(this.ip) && eq(e, error)) return this;
+        return new LinkState(ERROR, ip, e, tv);
+    }
+
+    LinkState withTv(TvState t) {
+        return t == tv ? this : new LinkState(link, ip, error, t);
+    }
+
+    /** אותו מצב חיבור - שינוי רק ב-TvState. */
+    boolean sameLink(LinkState o) {
+        return o != null && link == o.link && ip.equals(o.ip) && eq(error, o.error);
+    }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LinkState)) return false;
+        LinkState s = (LinkState) o;
+        return sameLink(s) && tv == s.tv;  // TvState מחליף מופע רק כשמשהו השתנה
+    }
+
+    @Override public int hashCode() { return link * 31 + ip.hashCode(); }
+
+    @Override public String toString() {
+        String[] names = {"off", "connecting", "connected", "resting", "error"};
+        return names[link] + (ip.isEmpty() ? "" : " " + ip) + (error != null ? " (" + error + ")" : "") + " " + tv;
+    }
+
+    private static boolean eq(String a, String b) { return a == null ? b == null : a.equals(b); }
+}
@@ -0,0 +1,111 @@
+package com.yesremote;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * רצף מקשים עם שם והמתנה אחרי כל צעד, למשל "ערוץ 12, השתק, חכה 3 שניות, בטל השתקה".
+ * immutable; נשמר ב-MacroStore ומתוזמן ב-writer של החיבור (ConnectionWriter.runMacro).
+ * בצורת טקסט: "12 MUTE 3s MUTE" - מספר = ספרות, שם = מקש, 500ms / 3s = המתנה אחרי הצעד הקודם.
+ */
+final class Macro {
+    // המתנה מקסימלית לצעד - מעבר לזה זו כנראה טעות הקלדה
+    static final int MAX_WAIT_MS = 10 * 60 * 1000;
+    static final int MAX_STEPS = 256;
+
+    private static final String[] NAMES = {
+        "UP", "DOWN", "LEFT", "RIGHT", "OK", "BACK", "HOME", "MENU", "POWER",
+        "VOL_UP", "VOL_DOWN", "MUTE", "CH_UP", "CH_DOWN", "LAST",
+    };
+    private static final int[] CODES = {
+        TvClient.KEY_UP, TvClient.KEY_DOWN, TvClient.KEY_LEFT, TvClient.KEY_RIGHT, TvClient.KEY_OK,
+        TvClient.KEY_BACK, TvClient.KEY_HOME, TvClient.KEY_MENU, TvClient.KEY_POWER,
+        TvClient.KEY_VOL_UP, TvClient.KEY_VOL_DOWN, TvClient.KEY_MUTE,
+        TvClient.KEY_CH_UP, TvClient.KEY_CH_DOWN, TvClient.KEY_LAST_CHANNEL,
+    };
+
+    final String name;
+    final int[]  keys;   // keycode לכל צעד
+    final int[]  waits;  // ms להמתין אחרי הצעד; 0 = הצעד הבא באותה כתיבה
+
+    Macro(String name, int[] keys, int[] waits) {
+        if (keys.length != waits.length) throw new IllegalArgumentException("keys/waits mismatch");
+        // ה-writer מריץ את keys[0] מיד - מאקרו ריק הוא תמיד שגיאה
+        if (keys.length == 0) throw new IllegalArgumentException("empty macro");
+        this.name = name; this.keys = keys; this.waits = waits;
+    }
+
+    int size() { return keys.length; }
+
+    /** משך כולל מתוכנן (בלי זמני כתיבה). */
+    long durationMs() {
+        long t = 0;
+        for (int i = 0; i < waits.length - 1; i++) t += waits[i];
+        return t;
+    }
+
+    /** "12 MUTE 3s MUTE" → Macro. IllegalArgumentException עם הטוקן הבעייתי. */
+    static Macro parse(String name, String text) {
+        List<int[]> steps = new ArrayList<>();   // {kc, wait}
+        for (String tok : text.trim().toUpperCase(Locale.ROOT).split("[\\s,]+")) {
+            if (tok.isEmpty()) continue;
+            int wait = parseWait(tok);
+            if (wait >= 0) {
+                if (steps.isEmpty()) throw new IllegalArgumentException("wait before first key: " + tok);
+                int[] last = steps.get(steps.size() - 1);
+                last[1] = Math.min(MAX_WAIT_MS, last[1] + wait);
+            } else if (tok.matches("\\d+")) {
+                for (int i = 0; i < tok.length(); i++) steps.add(new int[]{TvClient.digit(tok.charAt(i) - '0'), 0});
+            } else {
+                int kc = code(tok);
+                if (kc < 0) throw new IllegalArgumentException("unknown key: " + tok);
+                steps.add(new int[]{kc, 0});
+            }
+            if (steps.size() > MAX_STEPS) throw new IllegalArgumentException("too many steps");
+        }
+        if (steps.isEmpty()) throw new IllegalArgumentException("empty macro");
+        int[] keys = new int[steps.size()], waits = new int[steps.size()];
+        for (int i = 0; i < keys.length; i++) { keys[i] = steps.get(i)[0]; waits[i] = steps.get(i)[1]; }
+        return new Macro(name, keys, waits);
+    }
+
+    /** הצורה הטקסטואלית - parse(name, toText()) מחזיר מאקרו זהה. */
+    String toText() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            boolean digit = DigitEntry.isDigit(keys[i]);
+            boolean prevDigit = i > 0 && waits[i - 1] == 0 && DigitEntry.isDigit(keys[i - 1]);
+            if (sb.length() > 0 && !(digit && prevDigit)) sb.append(' ');
+            if (digit) sb.append(keys[i] - TvClient.KEY_0);
+            else sb.append(nameOf(keys[i]));
+            int w = waits[i];
+            if (w > 0) sb.append(' ').append(w % 1000 == 0 ? (w / 1000) + "s" : w + "ms");
+        }
+        return sb.toString();
+    }
+
+    /** "500MS" / "3S" → ms, -1 אם זה לא טוקן המתנה. */
+    private static int parseWait(String tok) {
+        try {
+            if (tok.endsWith("MS")) return Integer.parseInt(tok.substring(0, tok.length() - 2));
+            if (tok.endsWith("S") && tok.length() > 1 && Character.isDigit(tok.charAt(0)))
+                return (int) Math.round(Double.parseDouble(tok.substring(0, tok.length() - 1)) * 1000);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad wait: " + tok);
+        }
+        return -1;
+    }
+
+    private static int code(String name) {
+        for (int i = 0; i < NAMES.length; i++) if (NAMES[i].equals(name)) return CODES[i];
+        // keycode גולמי: KC123
+        if (name.startsWith("KC") && name.length() > 2 && name.substring(2).matches("\\d+")) return Integer.parseInt(name.substring(2));
+        return -1;
+    }
+
+    private static String nameOf(int kc) {
+        for (int i = 0; i < CODES.length; i++) if (CODES[i] == kc) return NAMES[i];
+        return "KC" + kc;
+    }
+}
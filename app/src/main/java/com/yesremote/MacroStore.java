@@ -0,0 +1,162 @@
+package com.yesremote;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * מאקרו-ים בקובץ בינארי קטן: לכל צעד keycode והמתנה כ-varint, כך שצעד טיפוסי הוא 2 בתים.
+ * הסדר נשמר - הראשון ברשימה הוא זה שכפתור המאקרו בווידג'ט מריץ.
+ * כתיבה לקובץ זמני ואז rename, וטעינה ברקע עם whenLoaded - כמו DeviceCache.
+ */
+final class MacroStore {
+    private static final String TAG  = "MacroStore";
+    private static final String FILE = "macros.bin";
+    private static final int VERSION = 1;
+
+    private static MacroStore instance;
+
+    static synchronized MacroStore get(Context ctx) {
+        if (instance == null) instance = new MacroStore(new File(ctx.getApplicationContext().getFilesDir(), FILE));
+        return instance;
+    }
+
+    private final File file;
+    private final Map<String, Macro> byName = new LinkedHashMap<>();
+    // הוסרו לפני סוף הטעינה - לא להחזיר אותם מהקובץ
+    private final Set<String> removed = new HashSet<>();
+    private boolean dirty;
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private final List<Runnable> onLoad = new ArrayList<>();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+
+    private MacroStore(File file) {
+        this.file = file;
+        io.execute(this::load);
+    }
+
+    boolean isLoaded() { return loaded.getCount() == 0; }
+
+    /** מריץ את r על ה-main thread אחרי שהקובץ נטען (מיד אם כבר נטען). */
+    void whenLoaded(Runnable r) {
+        synchronized (this) {
+            if (!isLoaded()) { onLoad.add(r); return; }
+        }
+        main.post(r);
+    }
+
+    // לא חוסמים - לפני סוף הטעינה רואים רק מה שנוסף מאז; ראה whenLoaded
+    synchronized List<Macro> list()       { return new ArrayList<>(byName.values()); }
+    synchronized Macro get(String name)   { return byName.get(name); }
+    /** הראשון ברשימה, null אם אין. */
+    synchronized Macro first()            { return byName.isEmpty() ? null : byName.values().iterator().next(); }
+
+    /** מוסיף או מחליף (מחליף - באותו מקום ברשימה). */
+    synchronized void put(Macro m) {
+        byName.put(m.name, m);
+        removed.remove(m.name);
+        if (isLoaded()) saveAsync();
+        else dirty = true;  // שמירה עכשיו הייתה דורסת את הקובץ ברשימה חלקית - load שומר בסופה
+    }
+
+    synchronized void remove(String name) {
+        boolean had = byName.remove(name) != null;
+        if (!isLoaded()) { removed.add(name); dirty = true; }
+        else if (had) saveAsync();
+    }
+
+    private void load() {
+        long t0 = System.nanoTime();
+        Map<String, Macro> m = new LinkedHashMap<>();
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == VERSION) {
+                    int n = readVarint(in);
+                    for (int i = 0; i < n; i++) {
+                        String name = in.readUTF();
+                        int steps = readVarint(in);
+                        if (steps == 0 || steps > Macro.MAX_STEPS) throw new IOException("bad step count " + steps);
+                        int[] keys = new int[steps], waits = new int[steps];
+                        for (int j = 0; j < steps; j++) { keys[j] = readVarint(in); waits[j] = readVarint(in); }
+                        m.put(name, new Macro(name, keys, waits));
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "load: " + e);
+                m.clear();
+            }
+        }
+        List<Runnable> run;
+        synchronized (this) {
+            // הסדר מהקובץ; מה שנשמר בינתיים גובר (במקומו, או בסוף אם חדש)
+            Map<String, Macro> fresh = new LinkedHashMap<>(byName);
+            byName.clear();
+            for (Macro x : m.values()) if (!removed.contains(x.name)) byName.put(x.name, x);
+            byName.putAll(fresh);
+            removed.clear();
+            if (dirty) saveAsync();
+            loaded.countDown();
+            run = new ArrayList<>(onLoad);
+            onLoad.clear();
+        }
+        Log.d(TAG, "loaded " + m.size() + " in " + (System.nanoTime() - t0) / 1000 + "us");
+        for (Runnable r : run) main.post(r);
+    }
+
+    private void saveAsync() {
+        final List<Macro> snap = new ArrayList<>(byName.values());
+        io.execute(() -> save(snap));
+    }
+
+    private void save(List<Macro> macros) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(VERSION);
+            writeVarint(out, macros.size());
+            for (Macro m : macros) {
+                out.writeUTF(m.name);
+                writeVarint(out, m.size());
+                for (int j = 0; j < m.size(); j++) { writeVarint(out, m.keys[j]); writeVarint(out, m.waits[j]); }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "save: " + e);
+            return;
+        }
+        if (!tmp.renameTo(file)) Log.w(TAG, "rename failed");
+    }
+
+    private static void writeVarint(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) { out.writeByte((v & 0x7F) | 0x80); v >>>= 7; }
+        out.writeByte(v);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("bad varint");
+    }
+}
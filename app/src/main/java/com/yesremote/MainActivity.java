@@ -6,80 +6,171 @@ import android.content.ComponentName;
 import android.content.Intent;
 
 import android.app.AlertDialog;
+import android.graphics.Typeface;
+import android.text.Editable;
 import android.text.InputType;
+import android.text.TextWatcher;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.*;
 import androidx.appcompat.app.AppCompatActivity;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
-    private TvClient client;
     private RemoteService remoteService;
     private boolean serviceBound = false;
     private final ServiceConnection serviceConnection = new ServiceConnection() {
         public void onServiceConnected(ComponentName name, IBinder binder) {
             remoteService = ((RemoteService.LocalBinder) binder).getService();
-            serviceBound = true;
-            // ← כאן client מתעדכן לclient המחובר של ה-Service
-            client = remoteService.getClient();
-            // עדכן UI listener (לא מחליף את ה-reconnect listener של RemoteService)
-            remoteService.setUiListener(new TvClient.Listener() {
-                public void onConnected()    { runOnUiThread(()->setStatus("מחובר ✅",0xFF4CAF50)); }
-                public void onDisconnected() { runOnUiThread(()->setStatus("מנותק",0xFFE94560)); }
-                public void onError(String m){ runOnUiThread(()->setStatus("שגיאה: "+m,0xFFFF9800)); }
-            });
+            StartupTrace.mark(StartupTrace.SERVICE_BOUND);
+            // לחיצות שנאספו לפני ה-bind עוברות עכשיו ל-Service
+            keys.attach(remoteService);
+            // טקסט שהוקלד לפני ה-bind לא התקבל - יוצא עכשיו
+            text.flush();
+            // מנוי אחד מתוך כמה (גם ההתראה והווידג'ט) - מקבל רק את המצב האחרון, על ה-main thread
+            remoteService.subscribe(linkSubscriber, 0);
+        }
+        public void onServiceDisconnected(ComponentName name) { keys.detach(); remoteService = null; }
+    };
+
+    private LinkState shownLink;
+    private int shownImeShows;
+    // שורת הסטטוס משקפת רק את מצב החיבור; שינוי עוצמה לא דורס הודעות אחרות בה
+    private final StateBus.Subscriber linkSubscriber = s -> {
+        // ה-TV פתח מקלדת - שדה חדש או שנוקה; הערך הבא נשלח גם אם זהה לקודם
+        if (s.tv.imeShows != shownImeShows) { shownImeShows = s.tv.imeShows; MainActivity.this.text.reset(); }
+        if (s.sameLink(shownLink)) return;
+        // מצב התחלתי (עוד לא ניסה להתחבר) לא דורס את מה שה-Activity כבר הציג
+        boolean first = shownLink == null;
+        shownLink = s;
+        switch (s.link) {
+            case LinkState.CONNECTED:  setStatus("מחובר ✅", 0xFF4CAF50); break;
+            case LinkState.ERROR:      setStatus("שגיאה: " + s.error, 0xFFFF9800); break;
+            case LinkState.RESTING:    setStatus("במנוחה - לחיצה מחברת", 0xFF8892A4); break;
+            case LinkState.CONNECTING: if (!first) setStatus("מנותק", 0xFFE94560); break;
+            default:                   if (!first) setStatus("מנותק", 0xFFE94560);
         }
-        public void onServiceDisconnected(ComponentName name) { serviceBound = false; }
     };
 
+    private CredentialStore creds;
     private TvDiscovery discovery;
     private TvPairing pairing;
     private TextView tvStatus;
     private EditText etIp;
     private String currentIp = "";
     private final List<String[]> foundDevices = new ArrayList<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // כל המקשים עוברים כאן - עובד עוד לפני שה-Service מחובר
+    private final KeyDispatcher keys = new KeyDispatcher(this);
+    // ספרות נאספות ונשלחות כרצף אחד
+    private final DigitEntry digits = new DigitEntry(handler, keys::sendSequence);
+    private final TextEntry  text   = new TextEntry(handler, keys::text);
 
     @Override protected void onCreate(Bundle s) {
+        StartupTrace.mark(StartupTrace.CREATE);
         super.onCreate(s);
         setContentView(R.layout.activity_main);
+        StartupTrace.mark(StartupTrace.CONTENT);
 
-        // client זמני עד שService יתחבר
-        client = new TvClient(this);
+        // הקובץ נטען ברקע; isPaired/savedIp תקפים מרגע שנטען
+        creds = CredentialStore.get(this);
         tvStatus = findViewById(R.id.tvStatus);
         etIp = findViewById(R.id.etIp);
-        String saved = client.getSavedIp();
-        if (!saved.isEmpty()) { etIp.setText(saved); currentIp = saved; }
-
         setupButtons();
-        startDiscovery();
+        StartupTrace.mark(StartupTrace.INTERACTIVE);
+
+        // ה-bind רץ במקביל; עד שמסתיים KeyDispatcher שומר את הלחיצות
+        serviceBound = bindService(new Intent(this, RemoteService.class), serviceConnection, BIND_AUTO_CREATE);
+
+        // כל השאר - אחרי שהפריים הראשון צויר
+        View decor = getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                handler.post(MainActivity.this::afterFirstDraw);
+                return true;
+            }
+        });
+    }
+
+    private void afterFirstDraw() {
+        StartupTrace.mark(StartupTrace.FIRST_DRAW);
+        creds.whenLoaded(this::onCredentialsLoaded);
+    }
+
+    private void onCredentialsLoaded() {
+        if (isDestroyed()) return;
+        StartupTrace.mark(StartupTrace.CREDENTIALS);
+        String saved = creds.savedIp();
+        if (!saved.isEmpty()) { etIp.setText(saved); currentIp = saved; }
 
-        if (!saved.isEmpty() && client.isPaired(saved)) {
+        if (!saved.isEmpty() && creds.isPaired(saved)) {
+            // TV מוכר - מתחברים ישר, בלי discovery
             setStatus("מתחבר...", 0xFF8892A4);
-            // הפעל Service
             Intent si = new Intent(this, RemoteService.class);
             si.putExtra("ip", saved);
             startService(si);
-            // ← bindService כדי לקבל reference לclient המחובר
-            bindService(new Intent(this, RemoteService.class), serviceConnection, BIND_AUTO_CREATE);
+        } else {
+            // עוד אין TV מחובר - מפתח רזרבי ל-IP שיוקלד ידנית
+            ClientKeys.prepareSpare();
+            ensureDiscovery();
         }
     }
 
+    private void ensureDiscovery() {
+        if (discovery != null) return;
+        loadCachedDevices();
+        startDiscovery();
+    }
+
     private void startDiscovery() {
         discovery = new TvDiscovery(this, new TvDiscovery.Listener() {
             public void onDeviceFound(String name, String host, int port) {
-                runOnUiThread(() -> {
-                    for (String[] d : foundDevices) if (d[1].equals(host)) return;
-                    foundDevices.add(new String[]{name, host});
-                    if (etIp.getText().toString().isEmpty()) { etIp.setText(host); currentIp = host; }
-                    if (foundDevices.size() > 1) findViewById(R.id.btnChooseDevice).setVisibility(View.VISIBLE);
-                    setStatus("נמצא: " + name, 0xFF2196F3);
-                });
+                runOnUiThread(() -> { addDevice(name, host); setStatus("נמצא: " + name, 0xFF2196F3); });
+            }
+            public void onDeviceLost(String name, String host) {
+                runOnUiThread(() -> removeDevice(host));
             }
             public void onDiscoveryFailed() {}
         });
         discovery.start();
+        StartupTrace.mark(StartupTrace.DISCOVERY);
+    }
+
+    /** מכשירים מהמטמון - בדרך כלל נטענים ברקע לפני שה-NSD מוצא משהו. */
+    private void loadCachedDevices() {
+        DeviceCache cache = DeviceCache.get(this);
+        cache.whenLoaded(() -> {
+            if (isDestroyed()) return;
+            // מה שה-NSD כבר מצא טרי יותר מהמטמון - לא לדרוס את השם
+            for (DeviceCache.Device d : cache.list()) if (!hasDevice(d.host)) addDevice(d.name, d.host);
+        });
+    }
+
+    private boolean hasDevice(String host) {
+        for (String[] d : foundDevices) if (d[1].equals(host)) return true;
+        return false;
+    }
+
+    private void addDevice(String name, String host) {
+        for (String[] d : foundDevices) if (d[1].equals(host)) { d[0] = name; return; }
+        foundDevices.add(new String[]{name, host});
+        // TV חדש - המפתח ל-pairing נוצר כבר עכשיו ברקע
+        if (!creds.isPaired(host)) ClientKeys.prepare(host);
+        if (etIp.getText().toString().isEmpty()) { etIp.setText(host); currentIp = host; }
+        if (foundDevices.size() > 1) findViewById(R.id.btnChooseDevice).setVisibility(View.VISIBLE);
+    }
+
+    private void removeDevice(String host) {
+        for (int i = 0; i < foundDevices.size(); i++)
+            if (foundDevices.get(i)[1].equals(host)) { foundDevices.remove(i); break; }
+        if (foundDevices.size() < 2) findViewById(R.id.btnChooseDevice).setVisibility(View.GONE);
     }
 
     private void showDevicePicker() {
@@ -94,28 +185,73 @@ public class MainActivity extends AppCompatActivity {
             }).show();
     }
 
+    /** רשימת המאקרו-ים: לחיצה מריצה; חדש, עריכה, ועצירה של מאקרו שרץ. */
+    private void showMacros() {
+        MacroStore store = MacroStore.get(this);
+        store.whenLoaded(() -> { if (!isDestroyed()) showMacros(store.list()); });
+    }
+
+    private void showMacros(List<Macro> list) {
+        String[] items = new String[list.size()];
+        for (int i = 0; i < items.length; i++) items[i] = list.get(i).name + "   " + list.get(i).toText();
+        new AlertDialog.Builder(this).setTitle("מאקרו")
+            .setItems(items, (d, w) -> { digits.flush(); keys.macro(list.get(w).name); })
+            .setPositiveButton("חדש", (d, w) -> editMacro(null))
+            .setNeutralButton("ערוך", (d, w) -> {
+                if (list.isEmpty()) { editMacro(null); return; }
+                String[] names = new String[list.size()];
+                for (int i = 0; i < names.length; i++) names[i] = list.get(i).name;
+                new AlertDialog.Builder(this).setTitle("עריכת מאקרו")
+                    .setItems(names, (d2, w2) -> editMacro(list.get(w2))).show();
+            })
+            .setNegativeButton("עצור", (d, w) -> keys.cancelMacro())
+            .show();
+    }
+
+    /** עורך: שם + צעדים ("12 MUTE 3s MUTE"). שם קיים - מוחלף; צעדים ריקים - נמחק. */
+    private void editMacro(Macro m) {
+        LinearLayout box = new LinearLayout(this);
+        box.setOrientation(LinearLayout.VERTICAL);
+        EditText name = new EditText(this);
+        name.setHint("שם");
+        EditText steps = new EditText(this);
+        steps.setHint("12 MUTE 3s MUTE");
+        if (m != null) { name.setText(m.name); steps.setText(m.toText()); }
+        box.addView(name);
+        box.addView(steps);
+        new AlertDialog.Builder(this).setTitle("עריכת מאקרו").setView(box)
+            .setPositiveButton("שמור", (d, w) -> {
+                String n = name.getText().toString().trim();
+                String t = steps.getText().toString().trim();
+                if (n.isEmpty()) return;
+                if (t.isEmpty()) { MacroStore.get(this).remove(n); return; }
+                try {
+                    MacroStore.get(this).put(Macro.parse(n, t));
+                } catch (IllegalArgumentException e) {
+                    Toast.makeText(this, e.getMessage(), Toast.LENGTH_LONG).show();
+                }
+            })
+            .setNegativeButton("ביטול", null)
+            .show();
+    }
+
     private void doConnect() {
         String ip = etIp.getText().toString().trim();
         if (ip.isEmpty()) { Toast.makeText(this, "הכנס IP", Toast.LENGTH_SHORT).show(); return; }
         currentIp = ip;
-        client.saveIp(ip);
+        creds.setSavedIp(ip);
 
         // הפעל Service עם IP
         Intent si = new Intent(this, RemoteService.class);
         si.putExtra("ip", ip);
         startService(si);
 
-        // bind אם לא עשינו עוד
-        if (!serviceBound) {
-            bindService(new Intent(this, RemoteService.class), serviceConnection, BIND_AUTO_CREATE);
-        }
-
-        if (!client.isPaired(ip)) {
+        if (!creds.isPaired(ip)) {
             setStatus("מתחיל pairing...", 0xFFFF9800);
             pairing = new TvPairing(ip, new TvPairing.Callback() {
                 public void onShowPin() { runOnUiThread(() -> { setStatus("הסתכל על הטלוויזיה לקוד", 0xFFFF9800); showPinDialog(); }); }
                 public void onPaired(byte[] key, byte[] cert) {
-                    client.savePairing(currentIp, key, cert);
+                    creds.put(currentIp, key, cert);
                     runOnUiThread(() -> setStatus("Paired! מתחבר...", 0xFF4CAF50));
                     // שלח IP ל-service כדי שיתחבר
                     Intent si2 = new Intent(MainActivity.this, RemoteService.class);
@@ -134,8 +270,12 @@ public class MainActivity extends AppCompatActivity {
         new AlertDialog.Builder(this).setTitle("איפוס חיבור")
             .setMessage("למחוק את נתוני ה-pairing ולהתחיל מחדש?")
             .setPositiveButton("כן", (d, w) -> {
-                if (!currentIp.isEmpty()) client.clearPairing(currentIp);
+                if (!currentIp.isEmpty()) {
+                    if (remoteService != null) remoteService.getClient().clearPairing(currentIp);
+                    else creds.remove(currentIp);
+                }
                 setStatus("נתוני חיבור נמחקו - לחץ חבר", 0xFF8892A4);
+                ensureDiscovery();
             })
             .setNegativeButton("ביטול", null).show();
     }
@@ -151,38 +291,117 @@ public class MainActivity extends AppCompatActivity {
             .setCancelable(false).show();
     }
 
+    private void showMetrics() {
+        String text = Metrics.toText() + StartupTrace.summary() + "\n"
+            + (remoteService != null ? remoteService.getReconnectStats() + "\n" : "");
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTypeface(Typeface.MONOSPACE);
+        tv.setTextSize(11);
+        tv.setTextIsSelectable(true);
+        tv.setPadding(24, 16, 24, 16);
+        ScrollView sv = new ScrollView(this);
+        sv.addView(tv);
+        new AlertDialog.Builder(this).setTitle("מדדים").setView(sv)
+            .setPositiveButton("שתף", (d, w) -> share(text))
+            .setNeutralButton("JSON", (d, w) -> share(Metrics.toJson()))
+            .setNegativeButton("איפוס", (d, w) -> Metrics.reset())
+            .show();
+    }
+
+    private void toggleCapture() {
+        File dir = new File(getFilesDir(), "capture");
+        if (FrameCapture.isOn()) FrameCapture.stop(); else FrameCapture.start(dir);
+        Toast.makeText(this, FrameCapture.isOn() ? "הקלטה פעילה: " + dir : "הקלטה נעצרה", Toast.LENGTH_SHORT).show();
+    }
+
+    private void share(String body) {
+        Intent i = new Intent(Intent.ACTION_SEND).setType("text/plain").putExtra(Intent.EXTRA_TEXT, body);
+        startActivity(Intent.createChooser(i, "YES Remote metrics"));
+    }
+
     private void setStatus(String t, int c) { tvStatus.setText(t); tvStatus.setTextColor(c); }
 
     private void setupButtons() {
         findViewById(R.id.btnConnect).setOnClickListener(v -> doConnect());
         findViewById(R.id.btnReset).setOnClickListener(v -> doReset());
         findViewById(R.id.btnChooseDevice).setOnClickListener(v -> showDevicePicker());
+        findViewById(R.id.btnMacros).setOnClickListener(v -> showMacros());
+        // לחיצה ארוכה על השורה העליונה - מסך מדדים
+        tvStatus.setOnLongClickListener(v -> { showMetrics(); return true; });
+        // לחיצה ארוכה על איפוס - הקלטת תעבורה (files/capture) לדיבאג
+        findViewById(R.id.btnReset).setOnLongClickListener(v -> { toggleCapture(); return true; });
+        // טקסט לשדה החיפוש ב-TV - נשלח כ-IME batch-edit, לא כמקשים
+        EditText etText = findViewById(R.id.etText);
+        if (etText != null) {
+            etText.addTextChangedListener(new TextWatcher() {
+                public void beforeTextChanged(CharSequence s, int a, int b, int c) {}
+                public void onTextChanged(CharSequence s, int a, int b, int c) {}
+                public void afterTextChanged(Editable e) { text.set(e.toString()); }
+            });
+            etText.setOnEditorActionListener((v, action, ev) -> { text.flush(); return false; });
+        }
         int[] ids = {R.id.btn0,R.id.btn1,R.id.btn2,R.id.btn3,R.id.btn4,
                      R.id.btn5,R.id.btn6,R.id.btn7,R.id.btn8,R.id.btn9};
         for (int i = 0; i < ids.length; i++) {
             final int d = i;
             Button b = findViewById(ids[i]);
-            if (b != null) b.setOnClickListener(v -> client.sendKey(TvClient.digit(d)));
+            if (b != null) b.setOnClickListener(v -> digits.add(TvClient.digit(d)));
         }
-        bind(R.id.btnUp,      TvClient.KEY_UP);      bind(R.id.btnDown,    TvClient.KEY_DOWN);
-        bind(R.id.btnLeft,    TvClient.KEY_LEFT);    bind(R.id.btnRight,   TvClient.KEY_RIGHT);
+        // מקשים שחוזרים בהחזקה - לפי touch down/up; השאר - לחיצה אחת ב-click
+        bindHold(R.id.btnUp,   TvClient.KEY_UP);     bindHold(R.id.btnDown,    TvClient.KEY_DOWN);
+        bindHold(R.id.btnLeft, TvClient.KEY_LEFT);   bindHold(R.id.btnRight,   TvClient.KEY_RIGHT);
+        bindHold(R.id.btnVolUp, TvClient.KEY_VOL_UP); bindHold(R.id.btnVolDown, TvClient.KEY_VOL_DOWN);
+        bindHold(R.id.btnChUp, TvClient.KEY_CH_UP);  bindHold(R.id.btnChDown,  TvClient.KEY_CH_DOWN);
         bind(R.id.btnOk,      TvClient.KEY_OK);      bind(R.id.btnBack,    TvClient.KEY_BACK);
         bind(R.id.btnHome,    TvClient.KEY_HOME);    bind(R.id.btnMenu,    TvClient.KEY_MENU);
-        bind(R.id.btnVolUp,   TvClient.KEY_VOL_UP);  bind(R.id.btnVolDown, TvClient.KEY_VOL_DOWN);
-        bind(R.id.btnMute,    TvClient.KEY_MUTE);    bind(R.id.btnChUp,    TvClient.KEY_CH_UP);
-        bind(R.id.btnChDown,  TvClient.KEY_CH_DOWN); bind(R.id.btnPower,   TvClient.KEY_POWER);
+        bind(R.id.btnMute,    TvClient.KEY_MUTE);    bind(R.id.btnPower,   TvClient.KEY_POWER);
         bind(R.id.btn_last_ch, TvClient.KEY_LAST_CHANNEL);
     }
 
     private void bind(int id, int kc) {
         View v = findViewById(id);
-        if (v != null) v.setOnClickListener(x -> client.sendKey(kc));
+        if (v != null) v.setOnClickListener(x -> { long tap = Metrics.tap(); digits.flush(); keys.send(kc, tap); });
+    }
+
+    private void bindHold(int id, int kc) {
+        View v = findViewById(id);
+        if (v == null) return;
+        v.setOnTouchListener((x, e) -> {
+            switch (e.getActionMasked()) {
+                case MotionEvent.ACTION_DOWN:
+                    x.setPressed(true);
+                    long tap = Metrics.tap(); digits.flush(); keys.hold(kc, tap);
+                    return true;
+                case MotionEvent.ACTION_UP:
+                    x.setPressed(false);
+                    keys.release(kc);
+                    x.performClick();
+                    return true;
+                case MotionEvent.ACTION_CANCEL:
+                    x.setPressed(false);
+                    keys.release(kc);
+                    return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // חזרה לאפליקציה פתוחה - אותו דבר כמו פתיחה (בפעם הראשונה ה-Service עוד לא מחובר)
+        keys.present();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        digits.flush();
+        text.flush();
+        if (remoteService != null) remoteService.unsubscribe(linkSubscriber);
         if (serviceBound) { unbindService(serviceConnection); serviceBound = false; }
+        keys.detach();
         if (discovery != null) discovery.stop();
     }
 }
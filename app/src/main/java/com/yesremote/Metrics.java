@@ -0,0 +1,118 @@
+package com.yesremote;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.yesremote.core.LatencyHistogram;
+
+/**
+ * מדדי זמן של האפליקציה: היסטוגרמות קבועות ומונים, בלי הקצאות בזמן המדידה.
+ * מסלול מקש: tap (ה-UI/הווידג'ט) → enqueue (תור ה-writer) → write → flush.
+ * ייצוא כטקסט (p50/p90/p99/max ב-ms) או JSON, למסך הדיבאג ולדיווחי שטח.
+ */
+final class Metrics {
+    private Metrics() {}
+
+    // מסלול מקש
+    static final LatencyHistogram TAP_TO_ENQUEUE = new LatencyHistogram("tap_to_enqueue");
+    static final LatencyHistogram QUEUE_WAIT     = new LatencyHistogram("queue_wait");
+    static final LatencyHistogram WRITE_FLUSH    = new LatencyHistogram("write_flush");
+    static final LatencyHistogram TAP_TO_FLUSH   = new LatencyHistogram("tap_to_flush");
+    // חיבור
+    static final LatencyHistogram CONNECT_TLS       = new LatencyHistogram("connect_tls");
+    static final LatencyHistogram CONNECT_CONFIGURE = new LatencyHistogram("connect_configure");
+    static final LatencyHistogram CONNECT_ACTIVE    = new LatencyHistogram("connect_set_active");
+    static final LatencyHistogram CONNECT_TOTAL     = new LatencyHistogram("connect_total");
+    static final LatencyHistogram TIME_TO_CONNECT   = new LatencyHistogram("reconnect_ttc");
+    static final LatencyHistogram PING_INTERVAL     = new LatencyHistogram("ping_interval");
+
+    private static final LatencyHistogram[] ALL = {
+        TAP_TO_ENQUEUE, QUEUE_WAIT, WRITE_FLUSH, TAP_TO_FLUSH,
+        CONNECT_TLS, CONNECT_CONFIGURE, CONNECT_ACTIVE, CONNECT_TOTAL,
+        TIME_TO_CONNECT, PING_INTERVAL };
+
+    static final AtomicLong keysSent    = new AtomicLong();
+    static final AtomicLong keysDropped = new AtomicLong();
+    static final AtomicLong attempts    = new AtomicLong();
+    static final AtomicLong connects    = new AtomicLong();
+    static final AtomicLong flaps       = new AtomicLong();
+    // TLS: resumed מול מלא (TlsCache)
+    static final AtomicLong tlsResumed  = new AtomicLong();
+    static final AtomicLong tlsFull     = new AtomicLong();
+    // עלות החיבור ברקע - מחושב גם לשעה, כדי להשוות עם/בלי IdlePolicy
+    static final AtomicLong bytesOut      = new AtomicLong();
+    static final AtomicLong bytesIn       = new AtomicLong();
+    static final AtomicLong framesIn      = new AtomicLong();   // כל מסגרת נכנסת מעירה את thread הקריאה
+    static final AtomicLong writerWakeups = new AtomicLong();
+    static final AtomicLong idleEntries   = new AtomicLong();
+    static final AtomicLong idleMs        = new AtomicLong();   // זמן idle שהסתיים (לא כולל idle נוכחי)
+
+    private static volatile long sinceMs = SystemClock.uptimeMillis();
+
+    /**
+     * נקרא בלחיצה (כפתור/ווידג'ט) - תחילת מסלול המקש. הערך עובר עם הפקודה עד ה-writer
+     * (ConnectionWriter.Cmd.tap); 0 = לא נמדד, למשל ספרות שמחכות בכוונה ל-DigitEntry.
+     */
+    static long tap() { return System.nanoTime(); }
+
+    static void reset() {
+        for (LatencyHistogram h : ALL) h.reset();
+        keysSent.set(0); keysDropped.set(0);
+        attempts.set(0); connects.set(0); flaps.set(0);
+        tlsResumed.set(0); tlsFull.set(0);
+        bytesOut.set(0); bytesIn.set(0); framesIn.set(0); writerWakeups.set(0);
+        idleEntries.set(0); idleMs.set(0);
+        sinceMs = SystemClock.uptimeMillis();
+    }
+
+    static String toText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("window ").append((SystemClock.uptimeMillis() - sinceMs) / 1000).append("s, times in ms\n");
+        LatencyHistogram.appendHeader(sb);
+        for (LatencyHistogram h : ALL) h.appendText(sb);
+        sb.append("keys_sent=").append(keysSent.get())
+          .append(" keys_dropped=").append(keysDropped.get())
+          .append(" attempts=").append(attempts.get())
+          .append(" connects=").append(connects.get())
+          .append(" flaps=").append(flaps.get())
+          .append(" tls_resumed=").append(tlsResumed.get())
+          .append(" tls_full=").append(tlsFull.get()).append('\n');
+        long win = SystemClock.uptimeMillis() - sinceMs;
+        sb.append("per_hour: bytes_out=").append(perHour(bytesOut.get(), win))
+          .append(" bytes_in=").append(perHour(bytesIn.get(), win))
+          .append(" writer_wakeups=").append(perHour(writerWakeups.get(), win))
+          .append(" read_wakeups=").append(perHour(framesIn.get(), win)).append('\n');
+        sb.append("idle_entries=").append(idleEntries.get())
+          .append(" idle_s=").append(idleMs.get() / 1000).append('\n');
+        return sb.toString();
+    }
+
+    /** count בחלון של windowMs, מנורמל לשעה. */
+    private static long perHour(long count, long windowMs) {
+        return windowMs <= 0 ? 0 : count * 3_600_000L / windowMs;
+    }
+
+    static String toJson() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"window_ms\":").append(SystemClock.uptimeMillis() - sinceMs).append(",\"histograms\":{");
+        for (int i = 0; i < ALL.length; i++) {
+            if (i > 0) sb.append(',');
+            ALL[i].appendJson(sb);
+        }
+        sb.append("},\"counters\":{\"keys_sent\":").append(keysSent.get())
+          .append(",\"keys_dropped\":").append(keysDropped.get())
+          .append(",\"attempts\":").append(attempts.get())
+          .append(",\"connects\":").append(connects.get())
+          .append(",\"flaps\":").append(flaps.get())
+          .append(",\"tls_resumed\":").append(tlsResumed.get())
+          .append(",\"tls_full\":").append(tlsFull.get())
+          .append(",\"bytes_out\":").append(bytesOut.get())
+          .append(",\"bytes_in\":").append(bytesIn.get())
+          .append(",\"read_wakeups\":").append(framesIn.get())
+          .append(",\"writer_wakeups\":").append(writerWakeups.get())
+          .append(",\"idle_entries\":").append(idleEntries.get())
+          .append(",\"idle_ms\":").append(idleMs.get()).append("}}");
+        return sb.toString();
+    }
+}
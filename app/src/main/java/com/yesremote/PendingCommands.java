@@ -0,0 +1,70 @@
+package com.yesremote;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * תור קטן של פקודות (מקש או רצף) שהגיעו כשאין חיבור.
+ * מתרוקן ברגע שהחיבור עולה; פקודה שחיכתה יותר מ-TTL נזרקת -
+ * לחיצה ישנה שמגיעה פתאום ל-TV גרועה מלחיצה שאבדה.
+ */
+final class PendingCommands {
+    private static final String TAG = "PendingCommands";
+    static final long DEFAULT_TTL_MS = 10_000;
+    private static final int CAP = 32;
+
+    interface Sink { void send(int[] kcs, long tapNs); }
+
+    private final int[][] cmds = new int[CAP][];
+    private final long[]  at   = new long[CAP];
+    private final long[]  taps = new long[CAP];  // Metrics.tap() של הלחיצה, 0 = לא נמדד
+    private int  head = 0, size = 0;
+    private long ttlMs = DEFAULT_TTL_MS;
+
+    synchronized void setTtlMs(long ms) { ttlMs = Math.max(0, ms); }
+    synchronized int  size()            { return size; }
+
+    /** מוסיף פקודה; אם התור מלא - הישנה ביותר נזרקת. */
+    synchronized void add(int[] kcs, long tapNs) {
+        long now = SystemClock.uptimeMillis();
+        expire(now);
+        if (size == CAP) { pop(); Log.w(TAG, "queue full, dropped oldest"); }
+        int i = (head + size) % CAP;
+        cmds[i] = kcs; at[i] = now; taps[i] = tapNs;
+        size++;
+    }
+
+    /** שולח את כל מה שעוד בתוקף, לפי הסדר. מחזיר כמה נשלחו. */
+    int drain(Sink sink) {
+        int[][] out;
+        long[] outTaps;
+        int n;
+        synchronized (this) {
+            expire(SystemClock.uptimeMillis());
+            n = size;
+            if (n == 0) return 0;
+            out = new int[n][];
+            outTaps = new long[n];
+            for (int k = 0; k < n; k++) { outTaps[k] = taps[head]; out[k] = pop(); }
+        }
+        for (int k = 0; k < n; k++) sink.send(out[k], outTaps[k]);
+        Log.d(TAG, "drained " + n);
+        return n;
+    }
+
+    synchronized void clear() { while (size > 0) pop(); }
+
+    private void expire(long now) {
+        int dropped = 0;
+        while (size > 0 && now - at[head] > ttlMs) { pop(); dropped++; }
+        if (dropped > 0) Log.d(TAG, "expired " + dropped);
+    }
+
+    private int[] pop() {
+        int[] c = cmds[head];
+        cmds[head] = null;
+        head = (head + 1) % CAP;
+        size--;
+        return c;
+    }
+}
@@ -0,0 +1,143 @@
+package com.yesremote;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Random;
+
+/**
+ * מנהל ה-reconnect של ה-Service: ניסיון אחד בכל רגע, backoff מעריכי עם jitter,
+ * ועצירה כשאין רשת (NetworkCallback מעיר אותו מיד כשה-Wi-Fi חוזר).
+ * כל המתודות נקראות מה-thread של ה-handler (main).
+ */
+final class ReconnectSupervisor {
+    private static final String TAG = "Reconnect";
+    private static final long BASE_MS = 1_000;
+    private static final long MAX_MS  = 60_000;
+
+    interface Connector { void connect(); }
+
+    private final Handler   handler;
+    private final Connector connector;
+    private final Random    rnd = new Random();
+    private final Runnable  retry = this::attempt;
+
+    private boolean enabled   = false;
+    private boolean online    = true;
+    private boolean inFlight  = false;  // ניסיון התחיל ועוד לא הסתיים
+    private boolean scheduled = false;
+    private boolean up        = false;
+    private int     failures  = 0;
+    private long    firstAttemptAt = 0; // תחילת רצף הניסיונות הנוכחי
+    private long    upSince = 0;
+
+    // מונים
+    private long attempts = 0, connects = 0, flaps = 0;
+    private long lastTimeToConnectMs = 0, totalTimeToConnectMs = 0;
+
+    ReconnectSupervisor(Handler handler, Connector connector) {
+        this.handler = handler;
+        this.connector = connector;
+    }
+
+    /** מתחיל (או מתחיל מחדש) לשמור על חיבור - ניסיון ראשון מיד. */
+    void start() {
+        enabled = true;
+        failures = 0;
+        // החיבור הקודם (אם היה) מוחלף - הנפילה שלו אינה flap, והזמן נמדד מעכשיו
+        up = false;
+        inFlight = false;
+        firstAttemptAt = SystemClock.uptimeMillis();
+        cancel();
+        attempt();
+    }
+
+    void stop() {
+        enabled = false;
+        cancel();
+        inFlight = false;
+        up = false;
+    }
+
+    boolean isConnecting() { return inFlight || scheduled; }
+
+    /** ניסיון מיידי אם אין חיבור ואין ניסיון באוויר (למשל לחיצה מווידג'ט). */
+    void retryNow() {
+        if (!enabled || up || inFlight) return;
+        cancel();
+        attempt();
+    }
+
+    void onConnected() {
+        inFlight = false;
+        up = true;
+        upSince = SystemClock.uptimeMillis();
+        connects++;
+        lastTimeToConnectMs = upSince - firstAttemptAt;
+        totalTimeToConnectMs += lastTimeToConnectMs;
+        Metrics.TIME_TO_CONNECT.record(lastTimeToConnectMs * 1000);
+        Metrics.connects.incrementAndGet();
+        failures = 0;
+        firstAttemptAt = 0;
+        Log.d(TAG, "up after " + lastTimeToConnectMs + "ms, " + stats());
+    }
+
+    /** החיבור נפל או הניסיון נכשל. onError+onDisconnected של אותה תקלה מתאחדים. */
+    void onLost() {
+        if (up) {
+            flaps++;
+            Metrics.flaps.incrementAndGet();
+            Log.d(TAG, "flap after " + (SystemClock.uptimeMillis() - upSince) + "ms");
+        }
+        up = false;
+        inFlight = false;
+        schedule();
+    }
+
+    void onNetworkAvailable() {
+        if (online) return;
+        online = true;
+        Log.d(TAG, "network back");
+        failures = 0;
+        retryNow();
+    }
+
+    void onNetworkLost() {
+        online = false;
+        cancel();
+        Log.d(TAG, "offline - waiting for network");
+    }
+
+    private void schedule() {
+        if (!enabled || !online || scheduled || inFlight) return;
+        long cap = Math.min(MAX_MS, BASE_MS << Math.min(failures, 16));
+        // equal jitter: חצי קבוע + חצי אקראי, כדי שכמה לקוחות לא יתנגשו
+        long delay = cap / 2 + (long) (rnd.nextDouble() * (cap / 2));
+        failures++;
+        scheduled = true;
+        handler.postDelayed(retry, delay);
+        Log.d(TAG, "retry #" + failures + " in " + delay + "ms");
+    }
+
+    private void cancel() {
+        scheduled = false;
+        handler.removeCallbacks(retry);
+    }
+
+    private void attempt() {
+        scheduled = false;
+        if (!enabled || !online) return;
+        inFlight = true;
+        attempts++;
+        Metrics.attempts.incrementAndGet();
+        if (firstAttemptAt == 0) firstAttemptAt = SystemClock.uptimeMillis();
+        connector.connect();
+    }
+
+    String stats() {
+        return "attempts=" + attempts + " connects=" + connects + " flaps=" + flaps
+            + " lastTtc=" + lastTimeToConnectMs + "ms"
+            + " avgTtc=" + (connects == 0 ? 0 : totalTimeToConnectMs / connects) + "ms";
+    }
+}
@@ -0,0 +1,100 @@
+package com.yesremote;
+
+import android.os.SystemClock;
+
+import java.io.IOException;
+
+import com.yesremote.core.RemoteProto;
+
+/**
+ * מכונת מצבים ל-handshake של פורט 6466:
+ * TV שולח configure → אנחנו configure → TV שולח set-active → אנחנו set-active → מוכן.
+ * מתקדמת ברגע שמגיעה התשובה הצפויה; RemoteError מה-TV מכשיל מיד.
+ * זמני כל שלב נרשמים ב-timings().
+ */
+final class RemoteHandshake implements RemoteProto.Receiver {
+    static final int PH_TLS = 0, PH_CONFIGURE = 1, PH_SET_ACTIVE = 2, PH_READY = 3;
+    private static final String[] NAMES = {"tls", "configure", "set_active", "ready"};
+
+    private final ConnectionWriter     writer;
+    private final RemoteProto.Receiver delegate;
+    private final byte[] configure, setActive;
+    private final long   start;
+    // at[i] = מתי הסתיים שלב i (ms מ-start)
+    private final long[] at = new long[NAMES.length];
+    private int     phase = PH_TLS;
+    private String  error;
+
+    /** @param delegate מקבל את ההודעות שאינן חלק מה-handshake (volume, start...) */
+    RemoteHandshake(ConnectionWriter writer, RemoteProto.Receiver delegate,
+                    byte[] configure, byte[] setActive, long startUptime) {
+        this.writer = writer;
+        this.delegate = delegate;
+        this.configure = configure;
+        this.setActive = setActive;
+        this.start = startUptime;
+    }
+
+    int     phase()   { return phase; }
+    boolean isReady() { return phase == PH_READY; }
+    String  phaseName() { return NAMES[phase]; }
+
+    /** TCP+TLS הסתיימו - מחכים ל-configure של ה-TV. */
+    void tlsDone() { advance(PH_CONFIGURE); }
+
+    /** זורק אם ה-TV דחה את ה-handshake. */
+    void check() throws IOException {
+        if (error != null) throw new IOException(error);
+    }
+
+    @Override public void onConfigure(int code1) {
+        if (phase != PH_CONFIGURE) return;
+        writer.sendRaw(configure);
+        advance(PH_SET_ACTIVE);
+    }
+
+    @Override public void onSetActive(int active) {
+        if (phase != PH_SET_ACTIVE) return;
+        writer.sendRaw(setActive);
+        advance(PH_READY);
+    }
+
+    @Override public void onRemoteError(boolean value1) {
+        error = "TV rejected handshake in " + phaseName();
+    }
+
+    @Override public void onPing(long val1)                         { delegate.onPing(val1); }
+    @Override public void onVolume(int level, int max, boolean m)   { delegate.onVolume(level, max, m); }
+    @Override public void onStart(boolean started)                  { delegate.onStart(started); }
+    @Override public void onImeKeyInject(int ime, int field, String pkg) { delegate.onImeKeyInject(ime, field, pkg); }
+    @Override public void onImeBatchEdit(int ime, int field)        { delegate.onImeBatchEdit(ime, field); }
+    @Override public void onImeShow(int field)                      { delegate.onImeShow(field); }
+    @Override public void onUnknown(int field, int size)            { delegate.onUnknown(field, size); }
+
+    private void advance(int next) {
+        at[phase] = SystemClock.uptimeMillis() - start;
+        phase = next;
+        if (next == PH_READY) at[PH_READY] = at[PH_SET_ACTIVE];
+    }
+
+    /** משך כל שלב ב-ms, לפי סדר השלבים (0 לשלב שלא הושלם). */
+    long[] phaseDurations() {
+        long[] d = new long[PH_READY];
+        long prev = 0;
+        for (int i = 0; i < d.length; i++) {
+            if (i >= phase) break;
+            d[i] = at[i] - prev;
+            prev = at[i];
+        }
+        return d;
+    }
+
+    String timings() {
+        long[] d = phaseDurations();
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < d.length; i++) s.append(NAMES[i]).append('=').append(d[i]).append("ms ");
+        s.append("total=").append(phase == PH_READY ? at[PH_READY] : SystemClock.uptimeMillis() - start).append("ms");
+        if (phase != PH_READY) s.append(" (stuck in ").append(phaseName()).append(')');
+        return s.toString();
+    }
+}
@@ -6,8 +6,15 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ServiceInfo;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
@@ -19,16 +26,44 @@ public class RemoteService extends Service {
     private static final String TAG        = "RemoteService";
     private static final String CHANNEL_ID = "yes_remote_channel";
     private static final int    NOTIF_ID   = 1;
-    private static final String PREFS      = "tvprefs";
+    // ההתראה והווידג'ט מתעדכנים לכל היותר פעם בזמן הזה (IPC ל-system_server בכל עדכון)
+    private static final long   RENDER_MIN_MS = 1_000;
 
     public static final String ACTION = "com.yesremote.ACTION_SEND_KEY";
+    // ספרה מהווידג'ט - נאספת עם הספרות הסמוכות ונשלחת כרצף אחד
+    public static final String ACTION_DIGIT = "com.yesremote.ACTION_DIGIT";
+    // מאקרו לפי שם (EXTRA_MACRO); בלי שם - הראשון ברשימה, או עצירה אם מאקרו רץ
+    public static final String ACTION_MACRO = "com.yesremote.ACTION_MACRO";
+    public static final String ACTION_MACRO_CANCEL = "com.yesremote.ACTION_MACRO_CANCEL";
+    public static final String EXTRA_MACRO = "macro";
     public static final String EXTRA  = "keycode";
+    // הופעל ב-startForegroundService (ווידג'ט כשהתהליך ברקע) - חייב startForeground מיד
+    public static final String EXTRA_FOREGROUND = "foreground";
+
+    // המופע הרץ - KeyReceiver קורא לו ישירות. main thread בלבד
+    private static RemoteService running;
+
+    static RemoteService running() { return running; }
 
     private TvClient client;
-    private TvClient.Listener uiListener;
     private String   currentIp = "";
     private final Handler  handler = new Handler(Looper.getMainLooper());
     private final IBinder  binder  = new LocalBinder();
+    // לחיצות שהגיעו בלי חיבור - נשלחות ב-onConnected
+    private final PendingCommands pending = new PendingCommands();
+    private final DigitEntry digits = new DigitEntry(handler, kcs -> send(kcs, 0));
+    private ReconnectSupervisor supervisor;
+    private IdlePolicy idle;
+    // מצב לכל המציגים (UI, ווידג'ט, התראה) - מאוחד ומוגבל קצב
+    private final StateBus bus = new StateBus(handler);
+    private Notification.Builder notif;   // נבנה פעם אחת; עדכון = setContentText + build
+    private String notifText;
+    // טקסט שהוקלד בלי חיבור - רק הערך האחרון נשלח ב-onConnected
+    private String pendingText;
+    // מאקרו שהתבקש בלי חיבור - רץ ב-onConnected
+    private Macro pendingMacro;
+    private ConnectivityManager.NetworkCallback netCallback;
+    private BroadcastReceiver screenReceiver;
 
     public class LocalBinder extends Binder {
         public RemoteService getService() { return RemoteService.this; }
@@ -38,45 +73,44 @@ public class RemoteService extends Service {
     public void onCreate() {
         super.onCreate();
         client = new TvClient(this);
+        client.setListener(clientListener);
+        client.addStateListener(tv -> bus.publish(bus.get().withTv(tv)));
+        supervisor = new ReconnectSupervisor(handler, () -> {
+            if (!currentIp.isEmpty()) client.connect(currentIp);
+        });
+        idle = new IdlePolicy(handler, idleLink);
+        registerNetworkCallback();
+        registerScreenReceiver();
         createNotificationChannel();
+        bus.subscribe(s -> updateNotification(notificationText(s)), RENDER_MIN_MS);
+        bus.subscribe(s -> RemoteWidget.pushStatus(this, s.isConnected()), RENDER_MIN_MS);
+        running = this;
         Log.d(TAG, "Service created");
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        // פקודה מווידג'ט - אל תגע ב-startForeground
-        if (intent != null && ACTION.equals(intent.getAction())) {
+        // מקש מווידג'ט כשה-Service לא רץ (KeyReceiver) - אל תגע ב-startForeground,
+        // אלא אם הופעל כ-foreground service
+        String action = intent != null ? intent.getAction() : null;
+        if (ACTION.equals(action) || ACTION_DIGIT.equals(action)) {
+            if (intent.getBooleanExtra(EXTRA_FOREGROUND, false)) goForeground();
+            long tap = Metrics.tap();
             int kc = intent.getIntExtra(EXTRA, -1);
-            Log.d(TAG, "Widget key kc=" + kc + " connected=" + client.isConnected());
-            if (kc >= 0) {
-                if (client.isConnected()) {
-                    client.sendKey(kc);
-                } else {
-                    String ip = getSavedIp();
-                    if (!ip.isEmpty()) {
-                        connectToTv(ip);
-                        final int finalKc = kc;
-                        handler.postDelayed(() -> {
-                            if (client.isConnected()) client.sendKey(finalKc);
-                        }, 2500);
-                    }
-                }
-            }
+            if (kc >= 0) widgetKey(kc, ACTION_DIGIT.equals(action), tap);
             return START_STICKY;
         }
 
-        // הפעלה מ-MainActivity
-        try {
-            if (Build.VERSION.SDK_INT >= 34) {
-                startForeground(NOTIF_ID, buildNotification("מחפש TV..."),
-                    ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE);
-            } else {
-                startForeground(NOTIF_ID, buildNotification("מחפש TV..."));
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "startForeground failed", e);
+        if (ACTION_MACRO.equals(action) || ACTION_MACRO_CANCEL.equals(action)) {
+            if (intent.getBooleanExtra(EXTRA_FOREGROUND, false)) goForeground();
+            if (ACTION_MACRO_CANCEL.equals(action)) cancelMacro();
+            else runMacro(intent.getStringExtra(EXTRA_MACRO));
+            return START_STICKY;
         }
 
+        // הפעלה מ-MainActivity
+        goForeground();
+
         if (intent != null) {
             String ip = intent.getStringExtra("ip");
             if (ip != null && !ip.isEmpty()) {
@@ -88,37 +122,239 @@ public class RemoteService extends Service {
                 // הפעלה ללא IP – חבר למה שנשמר
                 connectToTv(currentIp);
             } else {
-                String saved = getSavedIp();
-                if (!saved.isEmpty()) { currentIp = saved; connectToTv(saved); }
+                // אחרי restart של התהליך (START_STICKY) ה-IP מגיע מה-CredentialStore
+                CredentialStore.get(this).whenLoaded(() -> {
+                    String saved = getSavedIp();
+                    if (currentIp.isEmpty() && !saved.isEmpty()) { currentIp = saved; connectToTv(saved); }
+                });
             }
         }
+        // אחרי connectToTv - יציאה ממנוחה לא תתחיל חיבור שני
+        idle.input();
         return START_STICKY;
     }
 
-    public void setUiListener(TvClient.Listener l) { this.uiListener = l; }
+    private void goForeground() {
+        try {
+            if (Build.VERSION.SDK_INT >= 34) {
+                startForeground(NOTIF_ID, buildNotification(notificationText(bus.get())),
+                    ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE);
+            } else {
+                startForeground(NOTIF_ID, buildNotification(notificationText(bus.get())));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "startForeground failed", e);
+        }
+    }
+
+    /** מקש מהווידג'ט (דרך KeyReceiver). ספרות נאספות לרצף, השאר נשלח מיד. */
+    void widgetKey(int kc, boolean digit, long tapNs) {
+        Log.d(TAG, "Widget key kc=" + kc + " connected=" + client.isConnected());
+        idle.input();
+        if (digit) {
+            if (!DigitEntry.isDigit(kc)) return;
+            ensureConnecting();
+            digits.add(kc);
+            return;
+        }
+        digits.flush();
+        send(new int[]{kc}, tapNs);
+    }
+
+    /** זמן מקסימלי שלחיצה מחכה בתור לחיבור. */
+    public void setPendingTtlMs(long ms) { pending.setTtlMs(ms); }
+
+    /** מה-Activity: כמו לחיצה בווידג'ט - נשלח מיד או ממתין בתור לחיבור. */
+    public void sendKeys(int[] kcs, long tapNs) {
+        idle.input();
+        digits.flush();
+        send(kcs, tapNs);
+    }
+
+    /**
+     * touch down על מקש שחוזר (עוצמה, ערוצים, חיצים). בלי חיבור - לחיצה אחת בתור,
+     * וה-release שיגיע אחר כך פשוט לא ימצא מקש מוחזק.
+     */
+    public void holdKey(int kc, long tapNs) {
+        idle.input();
+        digits.flush();
+        if (client.isConnected()) { client.holdKey(kc, tapNs); return; }
+        send(new int[]{kc}, tapNs);
+    }
+
+    public void releaseKey(int kc) { client.releaseKey(kc); }
+
+    /** תוכן שדה הטקסט מה-Activity (אחרי איחוד ב-TextEntry). */
+    public void sendText(String text) {
+        idle.input();
+        if (client.isConnected() && client.sendText(text)) { pendingText = null; return; }
+        pendingText = text;
+        ensureConnecting();
+    }
+
+    /**
+     * מריץ מאקרו שמור. name=null (כפתור בווידג'ט) - עוצר מאקרו שרץ, אחרת מריץ את הראשון.
+     * בלי חיבור - ממתין ל-onConnected (מאקרו אחד, האחרון שהתבקש).
+     */
+    public void runMacro(String name) {
+        if (name == null && (client.runningMacro() != null || pendingMacro != null)) { cancelMacro(); return; }
+        MacroStore store = MacroStore.get(this);
+        // עלייה קרה (ווידג'ט) - הקובץ עוד נטען ברקע
+        if (!store.isLoaded()) { store.whenLoaded(() -> { if (running == this) runMacro(store, name); }); return; }
+        runMacro(store, name);
+    }
+
+    private void runMacro(MacroStore store, String name) {
+        Macro m = name != null ? store.get(name) : store.first();
+        if (m == null) { Log.w(TAG, "no macro " + name); return; }
+        idle.input();
+        digits.flush();
+        if (client.isConnected() && client.runMacro(m)) return;
+        pendingMacro = m;
+        ensureConnecting();
+    }
+
+    public void cancelMacro() {
+        pendingMacro = null;
+        client.cancelMacro();
+    }
+
+    /** האפליקציה נפתחה - מחזיר את החיבור ממנוחה לפני הלחיצה הראשונה. */
+    public void userPresent() {
+        idle.input();
+        ensureConnecting();
+    }
+
+    /**
+     * מדיניות מנוחה: אחרי idleMs בלי קלט (screenOffIdleMs כשהמסך כבוי) עוצרים את ה-keepalive,
+     * ועם closeSocket גם סוגרים את החיבור עד הקלט הבא. idleMs=0 - בלי מנוחה.
+     */
+    public void setIdlePolicy(long idleMs, long screenOffIdleMs, boolean closeSocket) {
+        idle.configure(idleMs, screenOffIdleMs, closeSocket);
+    }
+
+    private final IdlePolicy.Link idleLink = new IdlePolicy.Link() {
+        public void quiet() { client.setKeepalive(false); }
+        public void close() {
+            client.setKeepalive(false);
+            supervisor.stop();
+            client.disconnect();  // לא מדווח onDisconnected (epoch)
+            setLink(LinkState.RESTING);
+        }
+        public void wake(int from) {
+            client.setKeepalive(true);
+            // הקלט שהעיר יקרא ל-ensureConnecting, אבל ה-supervisor עצור - מתחילים אותו כאן
+            if (from == IdlePolicy.CLOSED && !currentIp.isEmpty() && !supervisor.isConnecting()) connectToTv(currentIp);
+        }
+        public boolean busy() { return client.runningMacro() != null; }
+    };
+
+    /** שולח מיד אם מחובר, אחרת שם בתור ומתחיל חיבור. */
+    private void send(int[] kcs, long tapNs) {
+        if (client.isConnected()) { sendNow(kcs, tapNs); return; }
+        pending.add(kcs, tapNs);
+        ensureConnecting();
+    }
+
+    private void sendNow(int[] kcs, long tapNs) {
+        if (kcs.length == 1) client.sendKey(kcs[0], tapNs);
+        else client.sendSequence(kcs, tapNs);
+    }
+
+    private void ensureConnecting() {
+        if (client.isConnected() || supervisor.isConnecting()) return;
+        if (currentIp.isEmpty() && !CredentialStore.get(this).isLoaded()) {
+            CredentialStore.get(this).whenLoaded(this::ensureConnecting);
+            return;
+        }
+        String ip = currentIp.isEmpty() ? getSavedIp() : currentIp;
+        if (ip.isEmpty()) { pending.clear(); return; }
+        if (!ip.equals(currentIp)) { connectToTv(ip); return; }
+        supervisor.retryNow();
+    }
 
     private void connectToTv(String ip) {
-        client.disconnect();
-        client.setListener(new TvClient.Listener() {
-            public void onConnected() {
-                updateNotification("מחובר ל-" + ip);
-                if (uiListener != null) uiListener.onConnected();
-            }
-            public void onDisconnected() {
-                updateNotification("מתחבר מחדש...");
-                handler.postDelayed(() -> { if (!currentIp.isEmpty()) connectToTv(currentIp); }, 3000);
-                if (uiListener != null) uiListener.onDisconnected();
-            }
-            public void onError(String m) {
-                handler.postDelayed(() -> { if (!currentIp.isEmpty()) connectToTv(currentIp); }, 5000);
-                if (uiListener != null) uiListener.onError(m);
+        currentIp = ip;
+        setLink(LinkState.CONNECTING);
+        supervisor.start();
+    }
+
+    private void setLink(int link) { bus.publish(bus.get().withLink(link, currentIp)); }
+
+    /**
+     * מנוי למצב החיבור וה-TV, על ה-main thread: מקבל מיד את המצב הנוכחי ואחר כך רק את האחרון
+     * בכל פעם שמשהו משתנה. minIntervalMs > 0 - לא יותר מפעם בזמן הזה.
+     */
+    void subscribe(StateBus.Subscriber s, long minIntervalMs) { bus.subscribe(s, minIntervalMs); }
+    void unsubscribe(StateBus.Subscriber s) { bus.unsubscribe(s); }
+    LinkState getLinkState() { return bus.get(); }
+
+    // listener יחיד לכל חיי ה-Service; TvClient לא מדווח מחיבורים ישנים (epoch)
+    private final TvClient.Listener clientListener = new TvClient.Listener() {
+        public void onConnected() {
+            supervisor.onConnected();
+            pending.drain(RemoteService.this::sendNow);
+            if (pendingText != null) { client.sendText(pendingText); pendingText = null; }
+            if (pendingMacro != null) { client.runMacro(pendingMacro); pendingMacro = null; }
+            setLink(LinkState.CONNECTED);
+        }
+        public void onDisconnected() {
+            supervisor.onLost();
+            dropDigits();
+            // ה-onDisconnected שאחרי onError לא מוחק את השגיאה - היא נשארת עד החיבור הבא
+            if (bus.get().link != LinkState.ERROR) setLink(LinkState.CONNECTING);
+        }
+        public void onError(String m) {
+            supervisor.onLost();
+            dropDigits();
+            bus.publish(bus.get().withError(m, currentIp));
+        }
+    };
+
+    /**
+     * חיבור פעיל נפל באמצע הקלדת ערוץ - הספרות שנאספו לא יוצאות לחיבור הבא
+     * (לחיצה ישנה שמגיעה פתאום גרועה מלחיצה שאבדה). ניסיון חיבור שנכשל לא מוחק אותן.
+     */
+    private void dropDigits() {
+        if (bus.get().link == LinkState.CONNECTED) digits.cancel();
+    }
+
+    private void registerNetworkCallback() {
+        ConnectivityManager cm = getSystemService(ConnectivityManager.class);
+        if (cm == null) return;
+        netCallback = new ConnectivityManager.NetworkCallback() {
+            @Override public void onAvailable(Network n) { handler.post(supervisor::onNetworkAvailable); }
+            @Override public void onLost(Network n)      { handler.post(supervisor::onNetworkLost); }
+        };
+        try {
+            cm.registerNetworkCallback(new NetworkRequest.Builder()
+                .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+                .addTransportType(NetworkCapabilities.TRANSPORT_ETHERNET)
+                .build(), netCallback);
+        } catch (Exception e) { Log.w(TAG, "network callback: " + e); netCallback = null; }
+    }
+
+    /**
+     * המסך נדלק - כנראה תבוא לחיצה (ווידג'ט או אפליקציה): יוצאים ממנוחה ומתחברים עכשיו,
+     * כדי שהלחיצה הראשונה לא תחכה ל-TLS. המסך כבה - זמן המנוחה מתקצר.
+     */
+    private void registerScreenReceiver() {
+        screenReceiver = new BroadcastReceiver() {
+            @Override public void onReceive(Context c, Intent i) {
+                if (Intent.ACTION_SCREEN_ON.equals(i.getAction())) { idle.screen(true); ensureConnecting(); }
+                else if (Intent.ACTION_SCREEN_OFF.equals(i.getAction())) idle.screen(false);
             }
-        });
-        client.connect(ip);
+        };
+        IntentFilter f = new IntentFilter(Intent.ACTION_SCREEN_ON);
+        f.addAction(Intent.ACTION_SCREEN_OFF);
+        registerReceiver(screenReceiver, f);
     }
 
-    private String getSavedIp() { return getSharedPreferences(PREFS,0).getString("ip",""); }
-    private void   saveIp(String ip) { getSharedPreferences(PREFS,0).edit().putString("ip",ip).apply(); }
+    /** מוני reconnect: ניסיונות, זמן עד חיבור, ניתוקים. */
+    public String getReconnectStats() { return supervisor.stats(); }
+
+    private String getSavedIp() { return client.getSavedIp(); }
+    private void   saveIp(String ip) { client.saveIp(ip); }
 
     public TvClient getClient()    { return client; }
     public boolean  isConnected()  { return client != null && client.isConnected(); }
@@ -132,26 +368,53 @@ public class RemoteService extends Service {
     }
 
     private Notification buildNotification(String text) {
-        PendingIntent pi = PendingIntent.getActivity(this, 0,
-            new Intent(this, MainActivity.class),
-            PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
-        return new Notification.Builder(this, CHANNEL_ID)
-            .setContentTitle("YES שלט").setContentText(text)
-            .setSmallIcon(android.R.drawable.ic_media_play)
-            .setContentIntent(pi).setOngoing(true).build();
+        if (notif == null) {
+            PendingIntent pi = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class),
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+            notif = new Notification.Builder(this, CHANNEL_ID)
+                .setContentTitle("YES שלט")
+                .setSmallIcon(android.R.drawable.ic_media_play)
+                .setContentIntent(pi).setOngoing(true);
+        }
+        notifText = text;
+        return notif.setContentText(text).build();
     }
 
+    /** רק כשהטקסט הנראה משתנה - שינוי בעוצמה או שגיאה חוזרת לא מגיעים ל-NotificationManager. */
     private void updateNotification(String text) {
+        if (text.equals(notifText)) return;
         NotificationManager nm = getSystemService(NotificationManager.class);
         if (nm != null) nm.notify(NOTIF_ID, buildNotification(text));
     }
 
+    private static String notificationText(LinkState s) {
+        switch (s.link) {
+            case LinkState.CONNECTED: return "מחובר ל-" + s.ip;
+            case LinkState.RESTING:   return "במנוחה";
+            case LinkState.CONNECTING:
+            case LinkState.ERROR:     return s.ip.isEmpty() ? "מחפש TV..." : "מתחבר מחדש...";
+            default:                  return "מחפש TV...";
+        }
+    }
+
     @Override public IBinder onBind(Intent intent) { return binder; }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        if (running == this) running = null;
         handler.removeCallbacksAndMessages(null);
+        digits.cancel();
+        idle.stop();
+        bus.clear();
+        supervisor.stop();
+        if (screenReceiver != null) unregisterReceiver(screenReceiver);
+        RemoteWidget.pushStatus(this, false);
+        if (netCallback != null) {
+            ConnectivityManager cm = getSystemService(ConnectivityManager.class);
+            if (cm != null) cm.unregisterNetworkCallback(netCallback);
+        }
         if (client != null) client.disconnect();
     }
 }
@@ -3,35 +3,80 @@ package com.yesremote;
 import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 import android.widget.RemoteViews;
 
+/**
+ * הווידג'ט: כל כפתור הוא broadcast ל-KeyReceiver, שמעביר ישר ל-RemoteService אם הוא רץ.
+ * ה-PendingIntents זהים לכל הווידג'טים ונבנים פעם אחת לתהליך; RemoteViews אחד לכולם.
+ * מצב החיבור נדחף ב-partiallyUpdateAppWidget - רק שורת הכותרת, ורק כשהוא משתנה.
+ */
 public class RemoteWidget extends AppWidgetProvider {
+    private static final int[] IDS = {
+        R.id.w0, R.id.w1, R.id.w2, R.id.w3, R.id.w4, R.id.w5, R.id.w6, R.id.w7, R.id.w8, R.id.w9,
+        R.id.w_ch_up, R.id.w_ch_down, R.id.w_vol_up, R.id.w_vol_down,
+        R.id.w_ok, R.id.w_back, R.id.w_last_ch, R.id.w_mute,
+    };
+    private static final int[] KCS = {
+        TvClient.KEY_0, TvClient.KEY_1, TvClient.KEY_2, TvClient.KEY_3, TvClient.KEY_4,
+        TvClient.KEY_5, TvClient.KEY_6, TvClient.KEY_7, TvClient.KEY_8, TvClient.KEY_9,
+        TvClient.KEY_CH_UP, TvClient.KEY_CH_DOWN, TvClient.KEY_VOL_UP, TvClient.KEY_VOL_DOWN,
+        TvClient.KEY_OK, TvClient.KEY_BACK, TvClient.KEY_LAST_CHANNEL, TvClient.KEY_MUTE,
+    };
+    private static final int DIGITS = 10;  // IDS[0..9] הן ספרות
+
+    private static PendingIntent[] intents;   // main thread בלבד; האחרון - כפתור המאקרו
+    private static int lastStatus = -1;       // -1 = עוד לא נדחף, 0 = מנותק, 1 = מחובר
+
     @Override
     public void onUpdate(Context ctx, AppWidgetManager mgr, int[] ids) {
-        for (int id : ids) update(ctx, mgr, id);
+        if (ids.length == 0) return;
+        RemoteViews v = new RemoteViews(ctx.getPackageName(), R.layout.widget_remote);
+        PendingIntent[] pis = intents(ctx);
+        for (int i = 0; i < IDS.length; i++) v.setOnClickPendingIntent(IDS[i], pis[i]);
+        v.setOnClickPendingIntent(R.id.w_macro, pis[IDS.length]);
+        applyStatus(v, lastStatus == 1);
+        mgr.updateAppWidget(ids, v);
     }
-    static void update(Context ctx, AppWidgetManager mgr, int id) {
+
+    /** מצב החיבור לכל הווידג'טים. זול: בלי שינוי - כלום, אחרת עדכון חלקי של הכותרת. */
+    static void pushStatus(Context ctx, boolean connected) {
+        int s = connected ? 1 : 0;
+        if (s == lastStatus) return;
+        lastStatus = s;
+        AppWidgetManager mgr = AppWidgetManager.getInstance(ctx);
+        if (mgr == null) return;
+        int[] ids = mgr.getAppWidgetIds(new ComponentName(ctx, RemoteWidget.class));
+        if (ids == null || ids.length == 0) return;
         RemoteViews v = new RemoteViews(ctx.getPackageName(), R.layout.widget_remote);
-        int[] wids={R.id.w0,R.id.w1,R.id.w2,R.id.w3,R.id.w4,R.id.w5,R.id.w6,R.id.w7,R.id.w8,R.id.w9};
-        int[] kcs={TvClient.KEY_0,TvClient.KEY_1,TvClient.KEY_2,TvClient.KEY_3,TvClient.KEY_4,
-                   TvClient.KEY_5,TvClient.KEY_6,TvClient.KEY_7,TvClient.KEY_8,TvClient.KEY_9};
-        for(int i=0;i<wids.length;i++) v.setOnClickPendingIntent(wids[i],pi(ctx,kcs[i],id*20+i));
-        v.setOnClickPendingIntent(R.id.w_ch_up,    pi(ctx,TvClient.KEY_CH_UP,       id*20+10));
-        v.setOnClickPendingIntent(R.id.w_ch_down,  pi(ctx,TvClient.KEY_CH_DOWN,     id*20+11));
-        v.setOnClickPendingIntent(R.id.w_vol_up,   pi(ctx,TvClient.KEY_VOL_UP,      id*20+12));
-        v.setOnClickPendingIntent(R.id.w_vol_down, pi(ctx,TvClient.KEY_VOL_DOWN,    id*20+13));
-        v.setOnClickPendingIntent(R.id.w_ok,       pi(ctx,TvClient.KEY_OK,          id*20+14));
-        v.setOnClickPendingIntent(R.id.w_back,     pi(ctx,TvClient.KEY_BACK,        id*20+15));
-        v.setOnClickPendingIntent(R.id.w_last_ch,  pi(ctx,TvClient.KEY_LAST_CHANNEL,id*20+16));
-        mgr.updateAppWidget(id,v);
+        applyStatus(v, connected);
+        mgr.partiallyUpdateAppWidget(ids, v);
     }
-    private static PendingIntent pi(Context ctx,int kc,int req){
-        Intent i=new Intent(ctx,RemoteService.class);
-        i.setAction("com.yesremote.ACTION_SEND_KEY"); i.putExtra("keycode",kc);
-        int f=PendingIntent.FLAG_UPDATE_CURRENT|(Build.VERSION.SDK_INT>=23?PendingIntent.FLAG_IMMUTABLE:0);
-        return PendingIntent.getService(ctx,req,i,f);
+
+    private static void applyStatus(RemoteViews v, boolean connected) {
+        v.setTextViewText(R.id.w_status, connected ? "YES שלט ●" : "YES שלט ○");
+        v.setTextColor(R.id.w_status, connected ? 0xFF4CAF50 : 0xFFE94560);
+    }
+
+    private static PendingIntent[] intents(Context ctx) {
+        if (intents != null) return intents;
+        Context app = ctx.getApplicationContext();
+        int f = PendingIntent.FLAG_UPDATE_CURRENT | (Build.VERSION.SDK_INT >= 23 ? PendingIntent.FLAG_IMMUTABLE : 0);
+        PendingIntent[] pis = new PendingIntent[IDS.length + 1];
+        for (int i = 0; i < IDS.length; i++) {
+            Intent in = new Intent(app, KeyReceiver.class);
+            in.setAction(KeyReceiver.ACTION);
+            in.putExtra(KeyReceiver.EXTRA_KEYCODE, KCS[i]);
+            in.putExtra(KeyReceiver.EXTRA_DIGIT, i < DIGITS);
+            // request code לפי כפתור - אחרת PendingIntent אחד דורס את השני
+            pis[i] = PendingIntent.getBroadcast(app, i, in, f);
+        }
+        Intent macro = new Intent(app, KeyReceiver.class);
+        macro.setAction(KeyReceiver.ACTION_MACRO);
+        pis[IDS.length] = PendingIntent.getBroadcast(app, IDS.length, macro, f);
+        return intents = pis;
     }
 }
@@ -0,0 +1,48 @@
+package com.yesremote;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * חותמות זמן לשלבי העלייה, יחסית לתחילת התהליך.
+ * כל שלב נרשם פעם אחת ל-log כ-"phase=<name> t=<ms>" תחת TAG "Startup",
+ * כך שאפשר לשלוף cold-start-to-first-key מ-logcat ולהשוות בין גרסאות.
+ */
+final class StartupTrace {
+    private static final String TAG = "Startup";
+
+    static final int CREATE = 0, CONTENT = 1, INTERACTIVE = 2, FIRST_DRAW = 3,
+                     CREDENTIALS = 4, SERVICE_BOUND = 5, DISCOVERY = 6, FIRST_KEY = 7;
+    private static final String[] NAMES = {
+        "create", "content", "interactive", "first_draw",
+        "credentials", "service_bound", "discovery", "first_key" };
+
+    private static final long[] at = new long[NAMES.length];
+
+    private StartupTrace() {}
+
+    /** רושם את השלב אם עוד לא נרשם בתהליך הזה. */
+    static void mark(int phase) {
+        long t = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+        synchronized (at) {
+            if (at[phase] != 0) return;
+            at[phase] = Math.max(1, t);
+        }
+        Log.i(TAG, "phase=" + NAMES[phase] + " t=" + t);
+        if (phase == FIRST_KEY) Log.i(TAG, summary());
+    }
+
+    /** כל השלבים שנרשמו, לדוגמה "create=210 content=260 ... first_key=1900". */
+    static String summary() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (at) {
+            for (int i = 0; i < NAMES.length; i++) {
+                if (at[i] == 0) continue;
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(NAMES[i]).append('=').append(at[i]);
+            }
+        }
+        return sb.toString();
+    }
+}
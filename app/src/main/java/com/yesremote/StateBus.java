@@ -0,0 +1,90 @@
+package com.yesremote;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * מפרסם LinkState לכמה מנויים. מאוחד (conflated): publish רק מחליף את הערך האחרון,
+ * ויש לכל היותר post אחד ממתין ל-main thread - קישור מהבהב לא מציף את ה-UI.
+ * כל מנוי מקבל את הערך העדכני בלבד, רק אם הוא שונה ממה שקיבל, ולא יותר מפעם ב-minIntervalMs
+ * (ההתראה והווידג'ט); ערך שנדחה נמסר בסוף החלון.
+ * publish מכל thread; המנויים נקראים על ה-main thread.
+ */
+final class StateBus {
+    interface Subscriber {
+        void onState(LinkState s);
+    }
+
+    private static final class Sub {
+        final Subscriber s;
+        final long       minMs;
+        LinkState last;      // מה שנמסר לאחרונה
+        long      lastAt;
+        boolean   delayed;   // מסירה מתוזמנת לסוף החלון
+        final Runnable retry;
+        Sub(StateBus bus, Subscriber s, long minMs) {
+            this.s = s; this.minMs = minMs;
+            this.retry = () -> { delayed = false; bus.deliver(this); };
+        }
+    }
+
+    private final Handler handler;
+    private final AtomicReference<LinkState> latest = new AtomicReference<>(LinkState.INITIAL);
+    private final AtomicBoolean posted = new AtomicBoolean();
+    private final List<Sub> subs = new CopyOnWriteArrayList<>();
+    private final Runnable dispatch = this::dispatch;
+
+    StateBus(Handler handler) { this.handler = handler; }
+
+    LinkState get() { return latest.get(); }
+
+    void publish(LinkState s) {
+        if (latest.getAndSet(s) == s) return;
+        if (posted.compareAndSet(false, true)) handler.post(dispatch);
+    }
+
+    /** מנוי חדש מקבל את הערך הנוכחי ב-post הבא. main thread בלבד. */
+    void subscribe(Subscriber s, long minIntervalMs) {
+        Sub sub = new Sub(this, s, minIntervalMs);
+        subs.add(sub);
+        handler.post(() -> { if (subs.contains(sub)) deliver(sub); });
+    }
+
+    void unsubscribe(Subscriber s) {
+        for (Sub sub : subs) {
+            if (sub.s != s) continue;
+            subs.remove(sub);
+            handler.removeCallbacks(sub.retry);
+        }
+    }
+
+    void clear() {
+        for (Sub sub : subs) handler.removeCallbacks(sub.retry);
+        subs.clear();
+    }
+
+    private void dispatch() {
+        posted.set(false);
+        for (Sub sub : subs) deliver(sub);
+    }
+
+    private void deliver(Sub sub) {
+        LinkState cur = latest.get();
+        if (cur.equals(sub.last) || sub.delayed) return;
+        long now = SystemClock.uptimeMillis();
+        long wait = sub.lastAt + sub.minMs - now;
+        if (sub.last != null && wait > 0) {
+            sub.delayed = true;
+            handler.postDelayed(sub.retry, wait);
+            return;
+        }
+        sub.last = cur;
+        sub.lastAt = now;
+        sub.s.onState(cur);
+    }
+}
@@ -0,0 +1,135 @@
+package com.yesremote;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.LinkAddress;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * גיבוי ל-NSD ברשתות שחוסמות multicast: סורק את ה-subnet המקומי ומנסה
+ * להתחבר ל-6466/6467 במקביל (pool חסום, timeout קצר). כל TV שנמצא מדווח מיד.
+ * ה-subnet ניתן גם ידנית (Subnet.parse) - למשל 127.0.0.1/24 מול listeners מקומיים.
+ */
+final class SubnetScanner {
+    private static final String TAG = "SubnetScanner";
+    static final int[] PORTS = {6466, 6467};
+    private static final int THREADS            = 64;
+    private static final int CONNECT_TIMEOUT_MS = 250;
+    // לא סורקים יותר מ-1024 כתובות גם ברשת גדולה
+    private static final int MIN_PREFIX = 22;
+
+    interface Callback {
+        void onHit(String host, int port);
+        void onDone(int probed, long elapsedMs);
+    }
+
+    /** כתובת IPv4 + אורך prefix. */
+    static final class Subnet {
+        final int self, prefix;
+        Subnet(int self, int prefix) {
+            this.self = self;
+            this.prefix = Math.max(MIN_PREFIX, Math.min(30, prefix));
+        }
+        int base()  { return self & mask(); }
+        int count() { return 1 << (32 - prefix); }
+        private int mask() { return -1 << (32 - prefix); }
+
+        /** "192.168.1.20/24" */
+        static Subnet parse(String cidr) throws UnknownHostException {
+            int slash = cidr.indexOf('/');
+            int prefix = slash < 0 ? 24 : Integer.parseInt(cidr.substring(slash + 1));
+            InetAddress a = InetAddress.getByName(slash < 0 ? cidr : cidr.substring(0, slash));
+            return new Subnet(toInt(a), prefix);
+        }
+
+        @Override public String toString() { return toHost(base()) + "/" + prefix; }
+    }
+
+    private final int[] ports;
+    private final int   threads, timeoutMs;
+    private volatile ExecutorService pool;
+
+    SubnetScanner() { this(PORTS, THREADS, CONNECT_TIMEOUT_MS); }
+
+    SubnetScanner(int[] ports, int threads, int timeoutMs) {
+        this.ports = ports;
+        this.threads = threads;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /** ה-IPv4 של הרשת הפעילה (Wi-Fi/Ethernet), או null. */
+    static Subnet localSubnet(Context ctx) {
+        ConnectivityManager cm = ctx.getSystemService(ConnectivityManager.class);
+        if (cm == null) return null;
+        Network n = cm.getActiveNetwork();
+        LinkProperties lp = n == null ? null : cm.getLinkProperties(n);
+        if (lp == null) return null;
+        for (LinkAddress la : lp.getLinkAddresses())
+            if (la.getAddress() instanceof Inet4Address && !la.getAddress().isLoopbackAddress())
+                return new Subnet(toInt(la.getAddress()), la.getPrefixLength());
+        return null;
+    }
+
+    /** מתחיל סריקה ברקע; callbacks נקראים מ-threads של ה-pool. */
+    void scan(Subnet net, Callback cb) {
+        cancel();
+        final ExecutorService p = Executors.newFixedThreadPool(threads);
+        pool = p;
+        final long t0 = System.currentTimeMillis();
+        final int base = net.base(), n = net.count();
+        // בלי כתובת הרשת וה-broadcast
+        final AtomicInteger left = new AtomicInteger(n - 2);
+        Log.d(TAG, "scanning " + net);
+        try {
+            for (int i = 1; i < n - 1; i++) {
+                final int addr = base + i;
+                p.execute(() -> {
+                    if (addr != net.self && !p.isShutdown()) probe(toHost(addr), cb);
+                    if (left.decrementAndGet() == 0) {
+                        p.shutdown();
+                        long ms = System.currentTimeMillis() - t0;
+                        Log.d(TAG, "scan done in " + ms + "ms");
+                        cb.onDone(n - 2, ms);
+                    }
+                });
+            }
+        } catch (RejectedExecutionException ignored) {}  // בוטל באמצע
+    }
+
+    void cancel() {
+        ExecutorService p = pool; pool = null;
+        if (p != null) p.shutdownNow();
+    }
+
+    private void probe(String host, Callback cb) {
+        for (int port : ports) {
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress(host, port), timeoutMs);
+                cb.onHit(host, port);
+                return;
+            } catch (IOException ignored) {}
+        }
+    }
+
+    static int toInt(InetAddress a) {
+        byte[] b = a.getAddress();
+        return (b[0] & 0xFF) << 24 | (b[1] & 0xFF) << 16 | (b[2] & 0xFF) << 8 | (b[3] & 0xFF);
+    }
+
+    static String toHost(int v) {
+        return ((v >>> 24) & 0xFF) + "." + ((v >>> 16) & 0xFF) + "." + ((v >>> 8) & 0xFF) + "." + (v & 0xFF);
+    }
+}
@@ -0,0 +1,52 @@
+package com.yesremote;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * מעביר טקסט משדה ב-Activity לשדה הפעיל ב-TV. כל הודעת IME batch-edit מחליפה את כל
+ * תוכן השדה, אז מספיק לשלוח את הערך האחרון: הקשות בתוך WINDOW_MS מתאחדות להודעה אחת,
+ * ובהקלדה רצופה יוצאת הודעה לפחות כל MAX_DELAY_MS כדי שה-TV יתעדכן תוך כדי.
+ */
+final class TextEntry {
+    static final long WINDOW_MS    = 150;
+    static final long MAX_DELAY_MS = 400;
+
+    /** false = לא התקבל (אין עדיין לאן) - הערך נשאר ממתין עד ה-flush הבא. */
+    interface Sink { boolean sendText(String text); }
+
+    private final Handler handler;
+    private final Sink    sink;
+    private String pending;       // null = אין מה לשלוח
+    private String sent = "";
+    private long   firstPendingAt;
+    private final Runnable flushRunnable = this::flush;
+
+    TextEntry(Handler handler, Sink sink) { this.handler = handler; this.sink = sink; }
+
+    /** הערך הנוכחי של השדה. נקרא מה-thread של ה-handler בלבד. */
+    void set(String text) {
+        long now = SystemClock.uptimeMillis();
+        if (pending == null) firstPendingAt = now;
+        pending = text;
+        handler.removeCallbacks(flushRunnable);
+        long due = Math.min(now + WINDOW_MS, firstPendingAt + MAX_DELAY_MS);
+        handler.postDelayed(flushRunnable, Math.max(0, due - now));
+    }
+
+    void flush() {
+        handler.removeCallbacks(flushRunnable);
+        String t = pending;
+        pending = null;
+        if (t == null || t.equals(sent)) return;
+        if (!sink.sendText(t)) { pending = t; return; }
+        sent = t;
+    }
+
+    /** שדה חדש ב-TV - הערך הבא יישלח גם אם זהה לקודם. */
+    void reset() {
+        handler.removeCallbacks(flushRunnable);
+        pending = null;
+        sent = "";
+    }
+}
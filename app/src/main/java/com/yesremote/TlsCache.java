@@ -0,0 +1,118 @@
+package com.yesremote;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * SSLContext אחד לכל TV, נשמר לכל חיי התהליך.
+ * ה-context מחזיק את ה-session cache, כך ש-reconnect לאותו TV עושה
+ * resumed handshake במקום handshake RSA מלא.
+ */
+final class TlsCache {
+    private static final String TAG = "TlsCache";
+    // כמה זמן session נשמר ב-cache של ה-client
+    private static final int SESSION_TIMEOUT_S = 24 * 60 * 60;
+
+    interface KeyLoader { KeyManager[] load(String ip); }
+
+    private static final Map<String, SSLContext> contexts = new HashMap<>();
+
+    /** ה-session האחרון מול ip:port - לזיהוי resumption ב-handshake הבא. */
+    private static final class Last {
+        final byte[] id;
+        final long   created;
+        Last(SSLSession s) { id = s.getId(); created = s.getCreationTime(); }
+    }
+    private static final Map<String, Last> lastSession = new HashMap<>();
+
+    private TlsCache() {}
+
+    /** ה-context של ip, נבנה מ-loader רק בפעם הראשונה. null אם אין חומר מפתח. */
+    static SSLContext get(String ip, KeyLoader loader) throws GeneralSecurityException {
+        synchronized (contexts) {
+            SSLContext ctx = contexts.get(ip);
+            if (ctx != null) return ctx;
+        }
+        KeyManager[] km = loader.load(ip);
+        if (km == null) return null;
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(km, new TrustManager[]{ TRUST_ALL }, new SecureRandom());
+        ctx.getClientSessionContext().setSessionTimeout(SESSION_TIMEOUT_S);
+        synchronized (contexts) {
+            SSLContext prev = contexts.get(ip);
+            if (prev != null) return prev;
+            contexts.put(ip, ctx);
+        }
+        return ctx;
+    }
+
+    /** לקרוא כשחומר המפתח של ip משתנה או נמחק. */
+    static void invalidate(String ip) {
+        synchronized (contexts) {
+            contexts.remove(ip);
+            for (Iterator<String> it = lastSession.keySet().iterator(); it.hasNext(); ) {
+                if (it.next().startsWith(ip + ":")) it.remove();
+            }
+        }
+    }
+
+    /**
+     * TCP connect ואז TLS מעליו עם host:port מפורשים - זה המפתח של ה-session cache,
+     * בלעדיו אין resumption.
+     */
+    static SSLSocket connect(SSLContext ctx, String ip, int port, int timeoutMs) throws IOException {
+        Socket raw = new Socket();
+        try {
+            raw.connect(new InetSocketAddress(ip, port), timeoutMs);
+            raw.setKeepAlive(true);
+            raw.setTcpNoDelay(true);
+            SSLSocket s = (SSLSocket) ctx.getSocketFactory().createSocket(raw, ip, port, true);
+            s.setEnabledProtocols(s.getSupportedProtocols());
+            s.setEnabledCipherSuites(s.getSupportedCipherSuites());
+            s.startHandshake();
+            record(ip + ":" + port, s.getSession());
+            return s;
+        } catch (IOException e) {
+            try { raw.close(); } catch (IOException ignored) {}
+            throw e;
+        }
+    }
+
+    /**
+     * resumed = ה-session של ה-cache מול אותו ip:port. ב-TLS 1.2 זה אותו session ID;
+     * ב-TLS 1.3 (PSK) ה-ID חדש אבל ה-session יורש את זמן היצירה של זה שב-cache.
+     * ההשוואה מול ה-session הקודם ולא מול השעון, כך ששינוי שעון לא משפיע.
+     */
+    private static void record(String key, SSLSession session) {
+        Last now = new Last(session), prev;
+        synchronized (contexts) { prev = lastSession.put(key, now); }
+        boolean wasResumed = prev != null && (
+            (now.id.length > 0 && Arrays.equals(now.id, prev.id))
+            || ("TLSv1.3".equals(session.getProtocol()) && now.created == prev.created));
+        long n = wasResumed ? Metrics.tlsResumed.incrementAndGet() : Metrics.tlsFull.incrementAndGet();
+        Log.d(TAG, (wasResumed ? "resumed" : "full") + " handshake #" + n + " " + session.getProtocol());
+    }
+
+    static final X509TrustManager TRUST_ALL = new X509TrustManager() {
+        public void checkClientTrusted(X509Certificate[] c, String a) {}
+        public void checkServerTrusted(X509Certificate[] c, String a) {}
+        public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
+    };
+}
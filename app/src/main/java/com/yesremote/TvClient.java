@@ -2,41 +2,40 @@
 package com.yesremote;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
-import android.util.Base64;
+import android.os.SystemClock;
 import android.util.Log;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.InetSocketAddress;
-import java.security.KeyFactory;
-import java.security.KeyStore;
-import java.security.PrivateKey;
-import java.security.SecureRandom;
-import java.security.cert.CertificateFactory;
-import java.security.cert.X509Certificate;
-import java.security.spec.PKCS8EncodedKeySpec;
-
-import javax.net.ssl.KeyManagerFactory;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocket;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+
+import com.yesremote.core.FrameReader;
+import com.yesremote.core.KeyCodes;
+import com.yesremote.core.RemoteProto;
 
 public class TvClient {
     private static final String TAG   = "TvClient";
     private static final int    PORT  = 6466;
-    private static final String PREFS = "tvprefs";
     // שולח RemoteSetActive כל KEEPALIVE_MS מילישניות
     private static final long   KEEPALIVE_MS = 5_000;
+    // זמן מקסימלי מסוף ה-TLS עד שה-TV מאשר set-active
+    private static final int    HANDSHAKE_TIMEOUT_MS = 5_000;
+    // זמן שיעד של setVolume נחשב "בדרך" אם ה-TV לא דיווח שהגיע אליו
+    private static final long   VOLUME_SETTLE_MS = 2_000;
 
-    // RemoteSetActive { active=1 } = field3(LEN) + len2 + field1(VARINT) + 1
-    private static final byte[] SET_ACTIVE = {0x1A, 0x02, 0x08, 0x01};
+    // RemoteSetActive { active=622 } - נשלח ב-handshake וכ-keepalive
+    private static final byte[] SET_ACTIVE = RemoteProto.setActive(RemoteProto.PROTOCOL_CODE);
+    private static final byte[] CONFIGURE  =
+        RemoteProto.configure(RemoteProto.PROTOCOL_CODE, "androitv-remote", "1.0.0");
 
     public interface Listener {
         void onConnected();
@@ -44,176 +43,333 @@ public class TvClient {
         void onError(String m);
     }
 
+    /** שינוי במצב ה-TV (עוצמה, power, אפליקציה) - נקרא על ה-main thread. */
+    public interface StateListener {
+        void onState(TvState s);
+    }
+
     public static final int
-        KEY_0=7,  KEY_1=8,  KEY_2=9,  KEY_3=10, KEY_4=11,
-        KEY_5=12, KEY_6=13, KEY_7=14, KEY_8=15, KEY_9=16,
-        KEY_UP=19, KEY_DOWN=20, KEY_LEFT=21, KEY_RIGHT=22,
-        KEY_OK=23, KEY_BACK=4, KEY_HOME=3, KEY_MENU=82,
-        KEY_POWER=26,
-        KEY_VOL_UP=24, KEY_VOL_DOWN=25, KEY_MUTE=164,
-        KEY_CH_UP=166, KEY_CH_DOWN=167,
-        KEY_LAST_CHANNEL=229;
+        KEY_0=KeyCodes.KEY_0, KEY_1=KeyCodes.KEY_1, KEY_2=KeyCodes.KEY_2, KEY_3=KeyCodes.KEY_3, KEY_4=KeyCodes.KEY_4,
+        KEY_5=KeyCodes.KEY_5, KEY_6=KeyCodes.KEY_6, KEY_7=KeyCodes.KEY_7, KEY_8=KeyCodes.KEY_8, KEY_9=KeyCodes.KEY_9,
+        KEY_UP=KeyCodes.KEY_UP, KEY_DOWN=KeyCodes.KEY_DOWN, KEY_LEFT=KeyCodes.KEY_LEFT, KEY_RIGHT=KeyCodes.KEY_RIGHT,
+        KEY_OK=KeyCodes.KEY_OK, KEY_BACK=KeyCodes.KEY_BACK, KEY_HOME=KeyCodes.KEY_HOME, KEY_MENU=KeyCodes.KEY_MENU,
+        KEY_POWER=KeyCodes.KEY_POWER,
+        KEY_VOL_UP=KeyCodes.KEY_VOL_UP, KEY_VOL_DOWN=KeyCodes.KEY_VOL_DOWN, KEY_MUTE=KeyCodes.KEY_MUTE,
+        KEY_CH_UP=KeyCodes.KEY_CH_UP, KEY_CH_DOWN=KeyCodes.KEY_CH_DOWN,
+        KEY_LAST_CHANNEL=KeyCodes.KEY_LAST_CHANNEL;
+
+    // מצבי לחיצה והחזקה - ראה setPressMode / setHoldMode
+    public static final int PRESS_SHORT = ConnectionWriter.PRESS_SHORT, PRESS_PAIR  = ConnectionWriter.PRESS_PAIR;
+    public static final int HOLD_REPEAT = ConnectionWriter.HOLD_REPEAT, HOLD_STREAM = ConnectionWriter.HOLD_STREAM;
 
     public static int digit(int d) { return KEY_0 + d; }
 
-    private final Context ctx;
+    private final CredentialStore store;
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private Listener     listener;
     private SSLSocket    socket;
-    private OutputStream out;
-    private InputStream  inp;
-    private final Object outLock = new Object();
+    // writer של החיבור הנוכחי - הוא היחיד שכותב ל-socket
+    private volatile ConnectionWriter writer;
     private volatile boolean connected = false;
-    private volatile boolean running   = false;
-
-    // Keepalive runnable - שולח SET_ACTIVE כל 20 שניות
-    private final Runnable keepaliveRunnable = new Runnable() {
-        @Override public void run() {
-            if (!connected) return;
-            new Thread(() -> {
-                try {
-                    synchronized (outLock) {
-                        if (out == null) return;
-                        out.write(SET_ACTIVE.length);
-                        out.write(SET_ACTIVE);
-                        out.flush();
-                    }
-                    Log.d(TAG, "keepalive sent");
-                } catch (Exception e) { Log.w(TAG, "keepalive err: " + e); }
-            }).start();
-            mainHandler.postDelayed(this, KEEPALIVE_MS);
-        }
-    };
+    // מזהה החיבור הנוכחי; כל connect/disconnect מקדם אותו
+    private final AtomicInteger epoch = new AtomicInteger();
+    private volatile long    repeatGapMs = 80;
+    private volatile int     pressMode = PRESS_SHORT, holdMode = HOLD_REPEAT;
+    private volatile long    repeatDelayMs = 400, repeatIntervalMs = 100;
+    private volatile boolean keepaliveOn = true;
+    private volatile String  lastConnectTimings = "";
+    private long lastPingNs;  // thread הקריאה בלבד; מתאפס בכל חיבור
+    // מצב ה-TV - נכתב מ-thread הקריאה (ומתאפס ב-connect), נקרא מכל thread
+    private volatile TvState state = TvState.UNKNOWN;
+    private final List<StateListener> stateListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean statePosted = new AtomicBoolean();
+    // יעד של setVolume שה-TV עוד לא דיווח שהגיע אליו (-1 = אין)
+    private volatile int  pendingVolume = -1;
+    private volatile long pendingVolumeAt;
+    // מונים של שדה הטקסט הפעיל ב-TV - חייבים לחזור ב-ime_batch_edit
+    private volatile int  imeCounter, imeFieldCounter;
 
-    public TvClient(Context ctx)        { this.ctx = ctx; }
+    public TvClient(Context ctx)        { this.store = CredentialStore.get(ctx); }
     public void setListener(Listener l) { this.listener = l; }
+    public void addStateListener(StateListener l)    { stateListeners.add(l); }
+    public void removeStateListener(StateListener l) { stateListeners.remove(l); }
+    /** המצב האחרון שה-TV דיווח בחיבור הנוכחי. */
+    public TvState getState() { return state; }
     public boolean isConnected()        { return connected; }
+    /** זמני השלבים של ה-connect האחרון שהצליח (tls/configure/set_active/total). */
+    public String getLastConnectTimings() { return lastConnectTimings; }
 
+    /**
+     * מתחיל חיבור חדש. כל קריאה מקבלת epoch משלה; thread של חיבור ישן
+     * (אחרי disconnect או connect חדש) לא יכול יותר לשנות מצב או לקרוא ל-listener.
+     */
     public void connect(final String ip) {
-        running = true;
+        disconnect();  // סוגר חיבור קודם אם יש
+        final int my = epoch.incrementAndGet();
+        // מצב מחיבור קודם לא תקף - ה-TV שולח start ו-volume מיד אחרי ה-handshake
+        pendingVolume = -1;
+        imeCounter = 0; imeFieldCounter = 0;
+        publish(TvState.UNKNOWN);
         new Thread(() -> {
+            SSLSocket sock = null;
+            ConnectionWriter w = null;
+            RemoteHandshake hs = null;
             try {
-                javax.net.ssl.KeyManager[] km = loadCert(ip);
-                if (km == null) { fire(2, "אין certificate"); return; }
-
-                SSLContext ssl = SSLContext.getInstance("TLS");
-                ssl.init(km, new TrustManager[]{ TRUST_ALL }, new SecureRandom());
-
-                socket = (SSLSocket) ssl.getSocketFactory().createSocket();
-                socket.setEnabledProtocols(socket.getSupportedProtocols());
-                socket.setEnabledCipherSuites(socket.getSupportedCipherSuites());
-                socket.connect(new InetSocketAddress(ip, PORT), 8000);
-                socket.setKeepAlive(true);
-                socket.setTcpNoDelay(true);
-                socket.startHandshake();
-                synchronized (outLock) { out = socket.getOutputStream(); }
-                inp = socket.getInputStream();
-
-                // handshake
-                readMsg(); // server info
-                sendRaw(new byte[]{10,34,8,(byte)238,4,18,29,24,1,34,1,49,42,15,
-                    97,110,100,114,111,105,116,118,45,114,101,109,111,116,101,50,5,49,46,48,46,48});
-                socket.setSoTimeout(2000);
-                try { for(int i=0;i<5;i++) readMsg(); } catch(Exception ignored){}
-                sendRaw(new byte[]{18,3,8,(byte)238,4});
-                try { for(int i=0;i<5;i++) readMsg(); } catch(Exception ignored){}
-                socket.setSoTimeout(0);
-
-                // שלח RemoteConfigureRequest + SET_ACTIVE מיד אחרי handshake
-                sendRaw(new byte[]{0x2A, 0x02, 0x08, 0x01}); // RemoteConfigureRequest
-                sendRaw(SET_ACTIVE);                          // RemoteSetActive
+                long t0 = SystemClock.uptimeMillis();
+                // context לכל TV נשמר בין חיבורים - reconnect עושה resumed handshake
+                SSLContext ssl = TlsCache.get(ip, store::keyManagers);
+                if (ssl == null) { fire(my, 2, "אין certificate"); return; }
+
+                sock = TlsCache.connect(ssl, ip, PORT, 8000);
+                FrameReader reader = new FrameReader(sock.getInputStream(), 512);
+                lastPingNs = 0;
+                w = new ConnectionWriter(sock.getOutputStream(), sock, KEEPALIVE_MS);
+                w.setRepeatGapMs(repeatGapMs);
+                w.setPressMode(pressMode);
+                w.setHoldMode(holdMode, repeatDelayMs, repeatIntervalMs);
+                synchronized (this) {
+                    if (epoch.get() != my) return;   // disconnect() בזמן ה-TLS
+                    socket = sock;
+                    writer = w;
+                }
+                w.start();
+
+                // handshake - מתקדם לפי ההודעות של ה-TV, לא לפי timeouts
+                hs = new RemoteHandshake(w, receiver, CONFIGURE, SET_ACTIVE, t0);
+                hs.tlsDone();
+                long deadline = SystemClock.uptimeMillis() + HANDSHAKE_TIMEOUT_MS;
+                while (!hs.isReady()) {
+                    long left = deadline - SystemClock.uptimeMillis();
+                    if (left <= 0) throw new IOException("handshake timeout in " + hs.phaseName());
+                    sock.setSoTimeout((int) left);
+                    ByteBuffer m;
+                    try { m = reader.next(); }
+                    catch (SocketTimeoutException e) { throw new IOException("handshake timeout in " + hs.phaseName()); }
+                    if (m == null) throw new IOException("TV closed connection in " + hs.phaseName());
+                    FrameCapture.frame(FrameCapture.SRC_REMOTE, FrameCapture.DIR_IN, m);
+                    RemoteProto.dispatch(m, hs);
+                    hs.check();
+                }
+                sock.setSoTimeout(0);
+                lastConnectTimings = hs.timings();
+                recordConnect(hs);
+                Log.d(TAG, "connect " + lastConnectTimings);
+
+                if (epoch.get() != my) return;
                 connected = true;
-                fire(0, null);
-                // התחל keepalive
-                mainHandler.postDelayed(keepaliveRunnable, KEEPALIVE_MS);
+                fire(my, 0, null);
+                // התחל keepalive (נשלח מה-writer)
+                w.startKeepalive(keepaliveOn ? SET_ACTIVE : null);
                 Log.d(TAG, "Ready + keepalive started");
 
                 // לולאת קריאה
-                while (running && !socket.isClosed()) {
-                    byte[] msg = readMsg();
+                while (epoch.get() == my && !sock.isClosed()) {
+                    ByteBuffer msg = reader.next();
                     if (msg == null) break;
-                    Log.d(TAG, "Recv: " + hex(msg));
-                    // Ping = RemotePingRequest = field8 = tag 0x42
-                    if (msg.length > 0 && (msg[0] & 0xFF) == 0x42) {
-                        // Pong = RemotePingResponse = field9 = tag 0x4A, same inner val
-                        byte[] pong = msg.clone();
-                        pong[0] = 0x4A;
-                        synchronized (outLock) {
-                            if (out != null) {
-                                out.write(pong.length); out.write(pong); out.flush();
-                            }
-                        }
-                        Log.d(TAG, "pong: " + hex(pong));
-                    }
+                    Metrics.framesIn.incrementAndGet();
+                    Metrics.bytesIn.addAndGet(msg.remaining());
+                    FrameCapture.frame(FrameCapture.SRC_REMOTE, FrameCapture.DIR_IN, msg);
+                    RemoteProto.dispatch(msg, receiver);
                 }
             } catch (Exception e) {
-                Log.e(TAG, "conn err: " + e);
-                fire(2, e.getMessage());
+                if (epoch.get() == my) {
+                    Log.e(TAG, "conn err: " + e);
+                    if (hs != null && !hs.isReady()) Log.w(TAG, "connect failed " + hs.timings());
+                    fire(my, 2, e.getMessage());
+                }
             } finally {
-                connected = false;
-                mainHandler.removeCallbacks(keepaliveRunnable);
-                // סגור socket רק אם לא כבר נסגר ע"י disconnect()
-                SSLSocket s = socket; socket = null;
-                try { if (s != null) s.close(); } catch (Exception ignored) {}
-                synchronized (outLock) { out = null; }
-                if (running) fire(1, null);  // reconnect רק אם לא הופסק בכוונה
+                if (w != null) w.close();
+                try { if (sock != null) sock.close(); } catch (Exception ignored) {}
+                boolean current;
+                synchronized (this) {
+                    current = epoch.get() == my;
+                    if (current) { connected = false; socket = null; writer = null; }
+                }
+                if (current) fire(my, 1, null);  // חיבור שהופסק בכוונה (disconnect) כבר לא current
             }
         }, "TvClient-conn").start();
     }
 
-    public void sendKey(final int kc) {
-        if (!connected) { Log.w(TAG,"not connected kc="+kc); return; }
-        new Thread(() -> {
-            try {
-                byte[] press   = keyMsg(kc, 1);
-                byte[] release = keyMsg(kc, 2);
-                synchronized (outLock) {
-                    if (out == null) return;
-                    out.write(press.length);   out.write(press);   out.flush();
-                }
-                Thread.sleep(80);
-                synchronized (outLock) {
-                    if (out == null) return;
-                    out.write(release.length); out.write(release); out.flush();
-                }
-                Log.d(TAG, "sent kc=" + kc);
-            } catch (Exception e) { Log.e(TAG, "sendKey err: "+e); }
-        }, "TvClient-key").start();
+    /** @param tapNs Metrics.tap() של הלחיצה, 0 אם לא נמדד */
+    public void sendKey(final int kc, long tapNs) {
+        ConnectionWriter w = writer;
+        if (!connected || w == null) { Metrics.keysDropped.incrementAndGet(); Log.w(TAG,"not connected kc="+kc); return; }
+        w.sendKey(kc, tapNs);
+    }
+
+    /**
+     * תחילת החזקה (touch down): הלחיצה יוצאת מיד, והמשכה לפי setHoldMode
+     * עד releaseKey. השעון של החזרות רץ ב-writer של החיבור.
+     */
+    public void holdKey(final int kc, long tapNs) {
+        ConnectionWriter w = writer;
+        if (!connected || w == null) { Metrics.keysDropped.incrementAndGet(); Log.w(TAG,"not connected hold kc="+kc); return; }
+        w.holdKey(kc, tapNs);
+    }
+
+    public void releaseKey(final int kc) {
+        ConnectionWriter w = writer;
+        if (w != null) w.releaseKey(kc);
+    }
+
+    /**
+     * קובע עוצמה מוחלטת: ההפרש מהעוצמה המדווחת נשלח כרצף VOL_UP/VOL_DOWN ב-write אחד.
+     * מניח צעד של 1 לכל לחיצה (כך ב-Android TV). false אם אין חיבור או שה-TV עוד לא דיווח עוצמה.
+     */
+    public boolean setVolume(int target) {
+        TvState s = state;
+        ConnectionWriter w = writer;
+        if (!connected || w == null || !s.hasVolume()) return false;
+        target = Math.max(0, Math.min(s.volumeMax, target));
+        // רצף קודם עוד בדרך - ה-TV מדווח צעד-צעד, אז מחשבים מהיעד הקודם ולא מהדיווח
+        int base = s.volume;
+        int pv = pendingVolume;
+        if (pv >= 0 && SystemClock.uptimeMillis() - pendingVolumeAt < VOLUME_SETTLE_MS) base = pv;
+        int delta = target - base;
+        if (delta == 0) return true;
+        if (!w.sendBurst(delta > 0 ? KEY_VOL_UP : KEY_VOL_DOWN, Math.abs(delta), 0)) return false;
+        pendingVolume = target;
+        pendingVolumeAt = SystemClock.uptimeMillis();
+        return true;
+    }
+
+    /**
+     * מחליף את תוכן שדה הטקסט הפעיל ב-TV ב-text (הודעת IME batch-edit אחת, במקום ניווט
+     * במקלדת שעל המסך). הסמן בסוף. ראה TextEntry לאיחוד הקשות.
+     */
+    public boolean sendText(String text) {
+        ConnectionWriter w = writer;
+        if (!connected || w == null) { Log.w(TAG, "not connected text"); return false; }
+        if (imeFieldCounter == 0) Log.d(TAG, "text before ime_show - TV may ignore it");
+        return w.sendRaw(RemoteProto.imeBatchEdit(imeCounter, imeFieldCounter, text));
+    }
+
+    /** מריץ מאקרו על ה-writer של החיבור הנוכחי (מחליף מאקרו שרץ). false אם אין חיבור. */
+    public boolean runMacro(Macro m) {
+        ConnectionWriter w = writer;
+        if (!connected || w == null) { Log.w(TAG, "not connected macro " + m.name); return false; }
+        return w.runMacro(m);
+    }
+
+    public void cancelMacro() {
+        ConnectionWriter w = writer;
+        if (w != null) w.cancelMacro();
+    }
+
+    /** שם המאקרו שרץ עכשיו, null אם אין. */
+    public String runningMacro() {
+        ConnectionWriter w = writer;
+        return w != null ? w.runningMacro() : null;
     }
 
-    private void sendRaw(byte[] p) throws IOException {
-        synchronized (outLock) { out.write(p.length); out.write(p); out.flush(); }
+    /**
+     * שולח רצף מקשים (למשל ספרות ערוץ) כ-write+flush אחד.
+     * השהייה נוספת רק בין מקשים זהים עוקבים - ראה setRepeatGapMs.
+     */
+    public void sendSequence(int[] kcs, long tapNs) {
+        if (kcs == null || kcs.length == 0) return;
+        ConnectionWriter w = writer;
+        if (!connected || w == null) { Metrics.keysDropped.addAndGet(kcs.length); Log.w(TAG,"not connected seq n="+kcs.length); return; }
+        w.sendSequence(kcs.clone(), tapNs);
     }
 
-    private byte[] readMsg() throws IOException {
-        int len = inp.read(); if (len < 0) return null;
-        byte[] buf = new byte[len & 0xFF]; int r = 0;
-        while (r < buf.length) { int n = inp.read(buf,r,buf.length-r); if(n<0) return null; r+=n; }
-        return buf;
+    /** PRESS_SHORT (ברירת מחדל) - מסגרת אחת ללחיצה; PRESS_PAIR - START_LONG, 80ms, END_LONG. */
+    public void setPressMode(int mode) {
+        pressMode = mode;
+        ConnectionWriter w = writer;
+        if (w != null) w.setPressMode(mode);
     }
 
-    private byte[] keyMsg(int kc, int dir) throws IOException {
-        ByteArrayOutputStream inner = new ByteArrayOutputStream();
-        inner.write(0x08); varint(inner, kc);
-        inner.write(0x10); varint(inner, dir);
-        ByteArrayOutputStream outer = new ByteArrayOutputStream();
-        outer.write(0x52); varint(outer, inner.size()); outer.write(inner.toByteArray());
-        return outer.toByteArray();
+    /**
+     * HOLD_REPEAT - לחיצה חוזרת כל intervalMs אחרי delayMs; HOLD_STREAM - START_LONG עד השחרור
+     * וה-TV מחליט על הקצב.
+     */
+    public void setHoldMode(int mode, long delayMs, long intervalMs) {
+        holdMode = mode; repeatDelayMs = delayMs; repeatIntervalMs = intervalMs;
+        ConnectionWriter w = writer;
+        if (w != null) w.setHoldMode(mode, delayMs, intervalMs);
     }
 
-    private void varint(ByteArrayOutputStream b, int v) {
-        while ((v & ~0x7F) != 0) { b.write((v & 0x7F)|0x80); v >>>= 7; } b.write(v);
+    /**
+     * false = בלי set_active תקופתי (מצב idle); החיבור נשאר פתוח וה-ping של ה-TV עדיין נענה.
+     * חל גם על החיבור הנוכחי.
+     */
+    public void setKeepalive(boolean on) {
+        keepaliveOn = on;
+        ConnectionWriter w = writer;
+        if (w != null && connected) w.setKeepalive(on ? SET_ACTIVE : null);
     }
 
-    private String hex(byte[] b) {
-        StringBuilder s = new StringBuilder();
-        for (byte x : b) s.append(String.format("%02X ", x&0xFF));
-        return s.toString().trim();
+    public void setRepeatGapMs(long ms) {
+        repeatGapMs = ms;
+        ConnectionWriter w = writer;
+        if (w != null) w.setRepeatGapMs(ms);
     }
 
-    private void fire(int type, String msg) {
-        if (listener == null) return;
+    // הודעות מה-TV - נקרא מ-thread הקריאה
+    private final RemoteProto.Receiver receiver = new RemoteProto.Receiver() {
+        @Override public void onPing(long val1) {
+            long now = System.nanoTime();
+            if (lastPingNs != 0) Metrics.PING_INTERVAL.recordNanos(now - lastPingNs);
+            lastPingNs = now;
+            // Pong = RemotePingResponse עם אותו val1
+            ConnectionWriter w = writer;
+            if (w != null) w.sendPong(val1);
+        }
+        @Override public void onVolume(int level, int max, boolean muted) {
+            Log.d(TAG, "volume " + level + "/" + max + (muted ? " muted" : ""));
+            if (level == pendingVolume) pendingVolume = -1;
+            publish(state.withVolume(level, max, muted));
+        }
+        @Override public void onStart(boolean started) {
+            Log.d(TAG, "tv started=" + started);
+            publish(state.withPower(started));
+        }
+        @Override public void onImeKeyInject(int ime, int field, String pkg) {
+            Log.d(TAG, "app: " + pkg);
+            imeCounter = ime; imeFieldCounter = field;
+            publish(state.withApp(pkg));
+        }
+        @Override public void onImeBatchEdit(int ime, int field) { imeCounter = ime; imeFieldCounter = field; }
+        @Override public void onImeShow(int field) {
+            Log.d(TAG, "ime show field=" + field);
+            imeFieldCounter = field;
+            publish(state.withImeShow());
+        }
+        @Override public void onRemoteError(boolean v) { Log.w(TAG, "remote error " + v); }
+        @Override public void onUnknown(int field, int size) { Log.d(TAG, "recv field=" + field + " len=" + size); }
+    };
+
+    private static void recordConnect(RemoteHandshake hs) {
+        long[] d = hs.phaseDurations();  // ms
+        long tls = d[RemoteHandshake.PH_TLS], conf = d[RemoteHandshake.PH_CONFIGURE], act = d[RemoteHandshake.PH_SET_ACTIVE];
+        Metrics.CONNECT_TLS.record(tls * 1000);
+        Metrics.CONNECT_CONFIGURE.record(conf * 1000);
+        Metrics.CONNECT_ACTIVE.record(act * 1000);
+        Metrics.CONNECT_TOTAL.record((tls + conf + act) * 1000);
+    }
+
+    // post אחד ממתין לכל היותר; ה-listeners מקבלים את המצב האחרון, לא כל שלב בדרך
+    private void publish(TvState next) {
+        if (next == state) return;
+        state = next;
+        if (stateListeners.isEmpty()) return;
+        if (statePosted.compareAndSet(false, true)) mainHandler.post(deliverState);
+    }
+
+    private final Runnable deliverState = () -> {
+        statePosted.set(false);
+        TvState s = state;
+        for (StateListener l : stateListeners) l.onState(s);
+    };
+
+    // אירועי חיבור לא מאוחדים: הם נדירים, ו-onError חייב להגיע לפני ה-onDisconnected שאחריו.
+    // איחוד לפי "המצב האחרון" נעשה ב-StateBus של RemoteService
+    private void fire(int my, int type, String msg) {
+        if (listener == null || epoch.get() != my) return;
         mainHandler.post(() -> {
+            // נבדק שוב על ה-main thread - disconnect() יכול היה לקרות בינתיים
+            if (epoch.get() != my) return;
             if      (type==0) listener.onConnected();
             else if (type==1) listener.onDisconnected();
             else              listener.onError(msg);
@@ -221,41 +377,22 @@ public class TvClient {
     }
 
     public void disconnect() {
-        running = false; connected = false;
-        mainHandler.removeCallbacks(keepaliveRunnable);
-        SSLSocket s = socket; socket = null;  // null תחילה למניעת double-close
+        SSLSocket s;
+        ConnectionWriter w;
+        synchronized (this) {
+            epoch.incrementAndGet();  // החיבור הקודם כבר לא ידווח
+            connected = false;
+            s = socket; socket = null;
+            w = writer; writer = null;
+        }
+        if (w != null) w.close();
         try { if (s != null) s.close(); } catch (Exception ignored) {}
-        synchronized (outLock) { out = null; }
-    }
-
-    public void savePairing(String ip, byte[] key, byte[] cert) {
-        prefs().edit()
-            .putString("key_"+ip,  Base64.encodeToString(key,  Base64.DEFAULT))
-            .putString("cert_"+ip, Base64.encodeToString(cert, Base64.DEFAULT))
-            .putBoolean("paired_"+ip, true).apply();
-    }
-    public void    clearPairing(String ip) { disconnect(); prefs().edit().remove("key_"+ip).remove("cert_"+ip).remove("paired_"+ip).apply(); }
-    public boolean isPaired(String ip)     { return prefs().getBoolean("paired_"+ip, false); }
-    public void    saveIp(String ip)       { prefs().edit().putString("ip", ip).apply(); }
-    public String  getSavedIp()            { return prefs().getString("ip", ""); }
-    private SharedPreferences prefs()      { return ctx.getSharedPreferences(PREFS, 0); }
-
-    private javax.net.ssl.KeyManager[] loadCert(String ip) {
-        try {
-            String kb = prefs().getString("key_"+ip, null), cb = prefs().getString("cert_"+ip, null);
-            if (kb==null||cb==null) { Log.w(TAG,"no cert"); return null; }
-            PrivateKey pk = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(Base64.decode(kb, Base64.DEFAULT)));
-            X509Certificate cert = (X509Certificate)CertificateFactory.getInstance("X.509").generateCertificate(new ByteArrayInputStream(Base64.decode(cb, Base64.DEFAULT)));
-            KeyStore ks = KeyStore.getInstance("PKCS12"); ks.load(null,null);
-            ks.setKeyEntry("k", pk, new char[0], new X509Certificate[]{cert});
-            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-            kmf.init(ks, new char[0]); return kmf.getKeyManagers();
-        } catch (Exception e) { Log.e(TAG,"loadCert",e); return null; }
     }
 
-    private static final X509TrustManager TRUST_ALL = new X509TrustManager() {
-        public void checkClientTrusted(X509Certificate[] c, String a) {}
-        public void checkServerTrusted(X509Certificate[] c, String a) {}
-        public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
-    };
+    public void    savePairing(String ip, byte[] key, byte[] cert) { store.put(ip, key, cert); }
+    public void    clearPairing(String ip) { disconnect(); store.remove(ip); }
+    /** לא חוסם - false עד שה-CredentialStore נטען (ראה CredentialStore.whenLoaded). */
+    public boolean isPaired(String ip)     { return store.isPaired(ip); }
+    public void    saveIp(String ip)       { store.setSavedIp(ip); }
+    public String  getSavedIp()            { return store.savedIp(); }
 }
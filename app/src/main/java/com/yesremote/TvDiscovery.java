@@ -3,55 +3,163 @@ package com.yesremote;
 import android.content.Context;
 import android.net.nsd.NsdManager;
 import android.net.nsd.NsdServiceInfo;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
 
 public class TvDiscovery {
     private static final String TAG = "TvDiscovery";
     private static final String SERVICE_TYPE = "_androidtvremote2._tcp.";
+    private static final int  MAX_RESOLVE_TRIES = 3;
+    private static final long RESOLVE_RETRY_MS  = 300;
+    // אם NSD לא מצא כלום תוך הזמן הזה - סריקת subnet
+    private static final long SCAN_FALLBACK_MS  = 3_000;
 
     public interface Listener {
         void onDeviceFound(String name, String host, int port);
         void onDiscoveryFailed();
+        default void onDeviceLost(String name, String host) {}
     }
 
     private final NsdManager nsdManager;
     private NsdManager.DiscoveryListener discoveryListener;
     private final Listener listener;
-    private final List<String> found = new ArrayList<>();
+    private final DeviceCache cache;
+    private final Context ctx;
+    private final SubnetScanner scanner = new SubnetScanner();
+    private final Runnable scanFallback = this::scanIfNothingFound;
+    // כל המצב למטה נגיש רק מ-handler (callbacks של NSD מגיעים מ-binder threads)
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, String> found = new HashMap<>();   // service name -> host
+    // NSD מרשה resolve אחד בכל פעם - השאר מחכים בתור
+    private final ArrayDeque<NsdServiceInfo> resolveQueue = new ArrayDeque<>();
+    private NsdServiceInfo resolving;
+    private int tries;
+    // מתקדם ב-stop(): callback מ-probe או מ-NSD שעוד היה באוויר לא מגיע ל-listener אחרי stop
+    private volatile int generation;
 
     public TvDiscovery(Context ctx, Listener listener) {
         this.nsdManager = (NsdManager) ctx.getSystemService(Context.NSD_SERVICE);
         this.listener = listener;
+        this.cache = DeviceCache.get(ctx);
+        this.ctx = ctx.getApplicationContext();
     }
 
     public void start() {
+        final int gen = generation;
         discoveryListener = new NsdManager.DiscoveryListener() {
-            public void onStartDiscoveryFailed(String s, int e) { listener.onDiscoveryFailed(); }
+            public void onStartDiscoveryFailed(String s, int e) {
+                post(gen, () -> { listener.onDiscoveryFailed(); scanIfNothingFound(); });
+            }
             public void onStopDiscoveryFailed(String s, int e) {}
             public void onDiscoveryStarted(String s) {}
             public void onDiscoveryStopped(String s) {}
-            public void onServiceFound(NsdServiceInfo info) {
-                nsdManager.resolveService(info, new NsdManager.ResolveListener() {
-                    public void onResolveFailed(NsdServiceInfo i, int e) {}
-                    public void onServiceResolved(NsdServiceInfo i) {
-                        String host = i.getHost().getHostAddress();
-                        if (!found.contains(host)) {
-                            found.add(host);
-                            listener.onDeviceFound(i.getServiceName(), host, i.getPort());
-                        }
-                    }
-                });
-            }
-            public void onServiceLost(NsdServiceInfo info) {}
+            public void onServiceFound(NsdServiceInfo info) { post(gen, () -> enqueue(info)); }
+            public void onServiceLost(NsdServiceInfo info)  { post(gen, () -> lost(info.getServiceName())); }
         };
+        handler.postDelayed(scanFallback, SCAN_FALLBACK_MS);
         try {
             nsdManager.discoverServices(SERVICE_TYPE, NsdManager.PROTOCOL_DNS_SD, discoveryListener);
-        } catch (Exception e) { listener.onDiscoveryFailed(); }
+        } catch (Exception e) { listener.onDiscoveryFailed(); handler.post(scanFallback); }
+    }
+
+    /** סריקת ה-subnet המקומי (או net אם לא null) לפורטים של Android TV. */
+    public void scan(SubnetScanner.Subnet net) {
+        if (net == null) net = SubnetScanner.localSubnet(ctx);
+        if (net == null) { Log.w(TAG, "no IPv4 network to scan"); return; }
+        final int gen = generation;
+        scanner.scan(net, new SubnetScanner.Callback() {
+            public void onHit(String host, int port) { post(gen, () -> scanned(host, port)); }
+            public void onDone(int probed, long ms) {}
+        });
+    }
+
+    /** מריץ r על ה-handler רק אם לא היה stop() מאז ש-gen נלקח. */
+    private void post(int gen, Runnable r) {
+        if (gen != generation) return;
+        handler.post(() -> { if (gen == generation) r.run(); });
+    }
+
+    private void scanIfNothingFound() {
+        handler.removeCallbacks(scanFallback);
+        if (found.isEmpty()) scan(null);
+    }
+
+    private void scanned(String host, int port) {
+        if (found.containsValue(host)) return;
+        String name = scanName(host);
+        found.put(name, host);
+        cache.put(name, host, port);
+        listener.onDeviceFound(name, host, port);
+    }
+
+    private void enqueue(NsdServiceInfo info) {
+        String name = info.getServiceName();
+        if (resolving != null && name.equals(resolving.getServiceName())) return;
+        for (NsdServiceInfo q : resolveQueue) if (name.equals(q.getServiceName())) return;
+        resolveQueue.add(info);
+        resolveNext();
+    }
+
+    private void resolveNext() {
+        if (resolving != null || resolveQueue.isEmpty()) return;
+        resolving = resolveQueue.poll();
+        tries = 0;
+        resolve();
+    }
+
+    private void resolve() {
+        final NsdServiceInfo target = resolving;
+        tries++;
+        nsdManager.resolveService(target, new NsdManager.ResolveListener() {
+            public void onResolveFailed(NsdServiceInfo i, int e) { handler.post(() -> failed(target, e)); }
+            public void onServiceResolved(NsdServiceInfo i)     { handler.post(() -> resolved(target, i)); }
+        });
+    }
+
+    private void failed(NsdServiceInfo target, int err) {
+        if (target != resolving) return;
+        if (tries < MAX_RESOLVE_TRIES) {
+            handler.postDelayed(() -> { if (target == resolving) resolve(); }, RESOLVE_RETRY_MS * tries);
+            return;
+        }
+        Log.w(TAG, "resolve failed " + target.getServiceName() + " err=" + err);
+        resolving = null;
+        resolveNext();
+    }
+
+    private void resolved(NsdServiceInfo target, NsdServiceInfo i) {
+        if (target != resolving) return;
+        resolving = null;
+        if (i.getHost() != null) {
+            String name = i.getServiceName(), host = i.getHost().getHostAddress();
+            found.remove(scanName(host));   // ה-NSD מחליף תוצאת סריקה
+            cache.remove(scanName(host));
+            cache.put(name, host, i.getPort());
+            if (!host.equals(found.put(name, host))) listener.onDeviceFound(name, host, i.getPort());
+        }
+        resolveNext();
+    }
+
+    // אין שם שירות בסריקה - ה-host משמש גם כשם
+    private static String scanName(String host) { return "Android TV " + host; }
+
+    private void lost(String name) {
+        resolveQueue.removeIf(q -> name.equals(q.getServiceName()));
+        cache.remove(name);
+        String host = found.remove(name);
+        if (host != null) listener.onDeviceLost(name, host);
     }
 
     public void stop() {
+        generation++;
+        handler.removeCallbacksAndMessages(null);
+        scanner.cancel();
+        resolveQueue.clear();
+        resolving = null;
         try { if (discoveryListener != null) nsdManager.stopServiceDiscovery(discoveryListener); }
         catch (Exception ignored) {}
     }
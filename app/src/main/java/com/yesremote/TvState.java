@@ -0,0 +1,49 @@
+package com.yesremote;
+
+/**
+ * תמונת מצב של ה-TV כפי שדווחה בחיבור הנוכחי: עוצמה, השתקה, האם דלוק, האפליקציה בחזית,
+ * וכמה פעמים ה-TV פתח מקלדת (שדה טקסט חדש או שנוקה).
+ * immutable - כל עדכון יוצר עותק, אז אפשר להעביר אותה בין threads בלי נעילות.
+ * -1 / null = ה-TV עוד לא דיווח.
+ */
+public final class TvState {
+    public static final TvState UNKNOWN = new TvState(-1, -1, false, false, false, null, 0);
+
+    public final int     volume, volumeMax;
+    public final boolean muted;
+    public final boolean powerKnown, powered;
+    public final String  app;
+    public final int     imeShows;
+
+    private TvState(int volume, int volumeMax, boolean muted, boolean powerKnown, boolean powered, String app, int imeShows) {
+        this.volume = volume; this.volumeMax = volumeMax; this.muted = muted;
+        this.powerKnown = powerKnown; this.powered = powered; this.app = app; this.imeShows = imeShows;
+    }
+
+    public boolean hasVolume() { return volume >= 0 && volumeMax > 0; }
+
+    TvState withVolume(int level, int max, boolean m) {
+        if (level == volume && max == volumeMax && m == muted) return this;
+        return new TvState(level, max, m, powerKnown, powered, app, imeShows);
+    }
+
+    TvState withPower(boolean on) {
+        if (powerKnown && on == powered) return this;
+        return new TvState(volume, volumeMax, muted, true, on, app, imeShows);
+    }
+
+    TvState withApp(String pkg) {
+        if (pkg == null || pkg.isEmpty() || pkg.equals(app)) return this;
+        return new TvState(volume, volumeMax, muted, powerKnown, powered, pkg, imeShows);
+    }
+
+    TvState withImeShow() {
+        return new TvState(volume, volumeMax, muted, powerKnown, powered, app, imeShows + 1);
+    }
+
+    @Override public String toString() {
+        return "volume=" + volume + "/" + volumeMax + (muted ? " muted" : "")
+            + " power=" + (powerKnown ? (powered ? "on" : "off") : "?")
+            + " app=" + (app != null ? app : "?");
+    }
+}
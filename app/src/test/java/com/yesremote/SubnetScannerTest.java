@@ -0,0 +1,98 @@
+package com.yesremote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * סריקה של 127.0.0.0/24 מול listeners על כתובות loopback שונות (ב-Linux כל 127/8 הוא loopback).
+ * הפורטים זמניים, אז כל TV מדומה מאזין על פורט אחר ברשימה.
+ */
+public class SubnetScannerTest {
+    private final Set<ServerSocket> servers = ConcurrentHashMap.newKeySet();
+
+    private int listen(String host) throws IOException {
+        ServerSocket s = new ServerSocket();
+        s.bind(new InetSocketAddress(InetAddress.getByName(host), 0));
+        servers.add(s);
+        return s.getLocalPort();
+    }
+
+    @After public void close() throws IOException {
+        for (ServerSocket s : servers) s.close();
+    }
+
+    @Test public void reportsListenersOnLoopbackAliases() throws Exception {
+        int a = listen("127.0.0.2");
+        int b = listen("127.0.0.5");
+        // listener על הכתובת של "עצמנו" - לא נסרקת
+        int self = listen("127.0.0.1");
+
+        Set<String> hits = new TreeSet<>();
+        AtomicInteger probed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        SubnetScanner scanner = new SubnetScanner(new int[]{a, b, self}, 16, 250);
+        long t0 = System.nanoTime();
+        scanner.scan(SubnetScanner.Subnet.parse("127.0.0.1/24"), new SubnetScanner.Callback() {
+            public void onHit(String host, int port) { synchronized (hits) { hits.add(host + ":" + port); } }
+            public void onDone(int n, long elapsedMs) { probed.set(n); done.countDown(); }
+        });
+        assertTrue("scan did not finish", done.await(10, TimeUnit.SECONDS));
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+
+        assertEquals(254, probed.get());
+        synchronized (hits) {
+            assertEquals(new TreeSet<>(java.util.Arrays.asList("127.0.0.2:" + a, "127.0.0.5:" + b)), hits);
+        }
+        // loopback סגור עונה ב-RST מיד - 254 כתובות × 3 פורטים לא מגיעים ל-timeout
+        assertTrue("scan took " + ms + "ms", ms < 5_000);
+    }
+
+    @Test public void silentHostsCostAtMostTheTimeout() throws Exception {
+        // 10.255.255.x לא ניתן לניתוב ברוב הסביבות - כל probe נגמר ב-timeout או בשגיאה מיידית
+        CountDownLatch done = new CountDownLatch(1);
+        SubnetScanner scanner = new SubnetScanner(new int[]{6466}, 64, 200);
+        long t0 = System.nanoTime();
+        scanner.scan(SubnetScanner.Subnet.parse("10.255.255.1/26"), new SubnetScanner.Callback() {
+            public void onHit(String host, int port) {}
+            public void onDone(int n, long elapsedMs) { done.countDown(); }
+        });
+        // 62 כתובות ב-64 threads - סבב אחד של timeout
+        assertTrue("scan did not finish", done.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0) < 2_000);
+    }
+
+    @Test public void cancelStopsReporting() throws Exception {
+        int a = listen("127.0.0.9");
+        AtomicInteger after = new AtomicInteger();
+        SubnetScanner scanner = new SubnetScanner(new int[]{a}, 4, 250);
+        scanner.scan(SubnetScanner.Subnet.parse("127.0.0.1/22"), new SubnetScanner.Callback() {
+            public void onHit(String host, int port) {}
+            public void onDone(int n, long elapsedMs) { after.incrementAndGet(); }
+        });
+        scanner.cancel();
+        Thread.sleep(500);
+        assertEquals(0, after.get());
+    }
+
+    @Test public void subnetParseClampsPrefix() throws Exception {
+        SubnetScanner.Subnet s = SubnetScanner.Subnet.parse("192.168.7.20/16");
+        assertEquals(22, s.prefix);
+        assertEquals(1024, s.count());
+        assertEquals("192.168.4.0/22", s.toString());
+        assertEquals("192.168.7.0/24", SubnetScanner.Subnet.parse("192.168.7.20").toString());
+    }
+}
@@ -0,0 +1,121 @@
+package com.yesremote.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * קידוד ופענוח של מסגרות 6466. עם -prof gc (ברירת המחדל ב-build.gradle)
+ * gc.alloc.rate.norm נותן בייטים מוקצים לכל פעולה - 0 במסלולים החמים.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CodecBenchmark {
+    private static final int STREAM_FRAMES = 256;
+
+    private final FrameBuffer out = new FrameBuffer(256);
+    private ByteBuffer ping, volume, imeKey;
+    private byte[] stream;
+    private final RemoteProto.Receiver sink = new RemoteProto.Receiver() {
+        long acc;
+        @Override public void onPing(long val1) { acc += val1; }
+        @Override public void onVolume(int level, int max, boolean muted) { acc += level; }
+    };
+
+    @Setup
+    public void setup() {
+        // RemotePingRequest { val1=42 }
+        ping = ByteBuffer.wrap(new byte[]{0x42, 0x02, 0x08, 0x2A});
+        // RemoteSetVolume { volume_max=100, volume_level=17, volume_muted=false }
+        volume = ByteBuffer.wrap(new byte[]{(byte) 0x92, 0x03, 0x06, 0x30, 0x64, 0x38, 0x11, 0x40, 0x00});
+        FrameBuffer b = new FrameBuffer(64);
+        RemoteProto.stringField(b, 12, "com.google.android.youtube.tv");
+        FrameBuffer inner = new FrameBuffer(64);
+        RemoteProto.varintField(inner, 1, 3);
+        RemoteProto.varintField(inner, 2, 1);
+        RemoteProto.bytesField(inner, 3, b.toByteArray());
+        FrameBuffer msg = new FrameBuffer(64);
+        RemoteProto.bytesField(msg, RemoteProto.F_IME_KEY_INJECT, inner.toByteArray());
+        imeKey = ByteBuffer.wrap(msg.toByteArray());
+
+        FrameBuffer s = new FrameBuffer(STREAM_FRAMES * 8);
+        for (int i = 0; i < STREAM_FRAMES; i++) {
+            s.putFrame((i & 1) == 0 ? ping.array() : volume.array());
+        }
+        stream = s.toByteArray();
+    }
+
+    /** מקש ידוע - העתקה מהטבלה המקודדת מראש. */
+    @Benchmark
+    public int encodeKnownKey() {
+        out.reset();
+        KeyFrames.write(KeyCodes.KEY_OK, KeyFrames.DIR_SHORT, out);
+        return out.size();
+    }
+
+    /** keycode מחוץ לטבלה - קידוד ישיר לבאפר. */
+    @Benchmark
+    public int encodeUnknownKey() {
+        out.reset();
+        KeyFrames.write(300, KeyFrames.DIR_SHORT, out);
+        return out.size();
+    }
+
+    /** press+release של רצף 3 ספרות, כמו ConnectionWriter.writeSequence. */
+    @Benchmark
+    public int encodeDigitSequence() {
+        out.reset();
+        for (int kc = KeyCodes.KEY_1; kc <= KeyCodes.KEY_3; kc++) {
+            KeyFrames.write(kc, KeyFrames.DIR_START_LONG, out);
+            KeyFrames.write(kc, KeyFrames.DIR_END_LONG, out);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public byte[] encodeConfigure() {
+        return RemoteProto.configure(RemoteProto.PROTOCOL_CODE, "androitv-remote", "1.0.0");
+    }
+
+    @Benchmark
+    public void decodePing() throws IOException {
+        ping.rewind();
+        RemoteProto.dispatch(ping, sink);
+    }
+
+    @Benchmark
+    public void decodeVolume() throws IOException {
+        volume.rewind();
+        RemoteProto.dispatch(volume, sink);
+    }
+
+    @Benchmark
+    public void decodeImeKeyInject() throws IOException {
+        imeKey.rewind();
+        RemoteProto.dispatch(imeKey, sink);
+    }
+
+    /** FrameReader + dispatch על stream של STREAM_FRAMES מסגרות (לולאת הקריאה של TvClient). */
+    @Benchmark
+    public void readStream(Blackhole bh) throws IOException {
+        FrameReader r = new FrameReader(new ByteArrayInputStream(stream), 512);
+        ByteBuffer m;
+        int n = 0;
+        while ((m = r.next()) != null) {
+            RemoteProto.dispatch(m, sink);
+            n++;
+        }
+        bh.consume(n);
+    }
+}
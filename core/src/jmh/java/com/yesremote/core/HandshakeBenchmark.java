@@ -0,0 +1,133 @@
+package com.yesremote.core;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * עלות ה-handshake של TLS בלי רשת: מלא מול resumed, על זוג SSLEngine בזיכרון
+ * עם תעודות client/server כמו מול ה-TV (client auth).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HandshakeBenchmark {
+    private static final X509TrustManager TRUST_ALL = new X509TrustManager() {
+        public void checkClientTrusted(X509Certificate[] c, String a) {}
+        public void checkServerTrusted(X509Certificate[] c, String a) {}
+        public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
+    };
+
+    @Param({"TLSv1.2", "TLSv1.3"})
+    public String protocol;
+
+    private SSLContext client, server;
+    private int port = 1;  // port שונה = אין session ל-resume
+    private final SecureRandom rnd = new SecureRandom();
+
+    @Setup
+    public void setup() throws Exception {
+        KeyPair ck = SelfSignedCert.generateKeyPair(rnd), sk = SelfSignedCert.generateKeyPair(rnd);
+        X509Certificate cc = SelfSignedCert.create(ck, "atvremote", rnd);
+        X509Certificate sc = SelfSignedCert.create(sk, "tv", rnd);
+        client = context(ck, cc);
+        server = context(sk, sc);
+        handshake(0);  // session ל-port 0 עבור resumed
+    }
+
+    private SSLContext context(KeyPair kp, X509Certificate cert) throws Exception {
+        KeyStore ks = KeyStore.getInstance("PKCS12");
+        ks.load(null, null);
+        ks.setKeyEntry("k", kp.getPrivate(), new char[0], new X509Certificate[]{cert});
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ks, new char[0]);
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(kmf.getKeyManagers(), new TrustManager[]{TRUST_ALL}, rnd);
+        return ctx;
+    }
+
+    @Benchmark
+    public SSLSession tlsFull() throws Exception { return handshake(port++); }
+
+    @Benchmark
+    public SSLSession tlsResumed() throws Exception { return handshake(0); }
+
+    /** handshake מלא בין שני engines; מחזיר את ה-session של ה-client. */
+    private SSLSession handshake(int peerPort) throws SSLException {
+        SSLEngine c = client.createSSLEngine("tv", peerPort);
+        SSLEngine s = server.createSSLEngine();
+        c.setUseClientMode(true);
+        s.setUseClientMode(false);
+        s.setNeedClientAuth(true);
+        c.setEnabledProtocols(new String[]{protocol});
+        s.setEnabledProtocols(new String[]{protocol});
+        int size = Math.max(c.getSession().getPacketBufferSize(), c.getSession().getApplicationBufferSize());
+        ByteBuffer c2s = ByteBuffer.allocate(size * 2), s2c = ByteBuffer.allocate(size * 2);
+        ByteBuffer app = ByteBuffer.allocate(size * 2), empty = ByteBuffer.allocate(0);
+        c.beginHandshake();
+        s.beginHandshake();
+        for (int i = 0; i < 1000; i++) {
+            boolean cDone = done(c), sDone = done(s);
+            if (cDone && sDone) break;
+            step(c, empty, c2s, s2c, app);
+            step(s, empty, s2c, c2s, app);
+        }
+        if (!done(c) || !done(s)) throw new SSLException("handshake stuck");
+        // TLS 1.3: ה-NewSessionTicket יוצא אחרי ה-Finished - בלעדיו אין resume
+        s.wrap(empty, s2c);
+        s2c.flip();
+        while (s2c.hasRemaining()) {
+            if (c.unwrap(s2c, app).bytesConsumed() == 0) break;
+            app.clear();
+        }
+        return c.getSession();
+    }
+
+    private static boolean done(SSLEngine e) {
+        SSLEngineResult.HandshakeStatus h = e.getHandshakeStatus();
+        return h == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING || h == SSLEngineResult.HandshakeStatus.FINISHED;
+    }
+
+    // מקדם engine אחד: משימות, wrap לצד השני, unwrap ממנו
+    private static void step(SSLEngine e, ByteBuffer empty, ByteBuffer outNet, ByteBuffer inNet, ByteBuffer app)
+            throws SSLException {
+        while (true) {
+            SSLEngineResult.HandshakeStatus h = e.getHandshakeStatus();
+            if (h == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                Runnable t;
+                while ((t = e.getDelegatedTask()) != null) t.run();
+            } else if (h == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                e.wrap(empty, outNet);
+            } else if (h == SSLEngineResult.HandshakeStatus.NEED_UNWRAP) {
+                inNet.flip();
+                SSLEngineResult r = e.unwrap(inNet, app);
+                inNet.compact();
+                app.clear();
+                if (r.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW || r.bytesConsumed() == 0) return;
+            } else {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.yesremote.core;
+
+import java.security.KeyPair;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAPublicKey;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** ה-crypto של pairing: secret של ה-PIN, קידוד ההודעות, ויצירת מפתח + תעודה ל-client. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PairingCryptoBenchmark {
+    private final SecureRandom rnd = new SecureRandom();
+    private RSAPublicKey clientPub, serverPub;
+
+    @Setup
+    public void setup() throws Exception {
+        clientPub = (RSAPublicKey) SelfSignedCert.generateKeyPair(rnd).getPublic();
+        serverPub = (RSAPublicKey) SelfSignedCert.generateKeyPair(rnd).getPublic();
+    }
+
+    @Benchmark
+    public byte[] pairingSecret() throws Exception {
+        return PairingSecret.compute(clientPub, serverPub, "A1B2C3");
+    }
+
+    /** request + options + configuration - כל מה שה-client מקודד לפני ה-PIN. */
+    @Benchmark
+    public int pairingMessages() {
+        return PairingProto.pairingRequest("atvremote", "YesRemote").length
+            + PairingProto.options().length + PairingProto.configuration().length;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public X509Certificate clientKeyGeneration() throws Exception {
+        KeyPair kp = SelfSignedCert.generateKeyPair(rnd);
+        return SelfSignedCert.create(kp, "atvremote", rnd);
+    }
+}
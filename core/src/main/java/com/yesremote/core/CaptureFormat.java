@@ -0,0 +1,22 @@
+package com.yesremote.core;
+
+import java.io.File;
+
+/**
+ * פורמט ההקלטה של FrameCapture (באפליקציה), משותף לכותב ולקורא.
+ * קטע: MAGIC | wall clock ב-ms | nanoTime של תחילת הקטע, ואחריו רשומות:
+ * tag = (src &lt;&lt; 1) | dir (בית אחד) | dt מהרשומה הקודמת ב-us (varint) | אורך (varint) | payload.
+ */
+public final class CaptureFormat {
+    private CaptureFormat() {}
+
+    public static final int SRC_REMOTE = 0, SRC_PAIRING = 1;
+    public static final int DIR_IN = 0, DIR_OUT = 1;
+
+    public static final int MAGIC    = 0x59524331;  // "YRC1"
+    public static final int SEGMENTS = 2;
+
+    public static int tag(int src, int dir) { return (src << 1) | dir; }
+
+    public static File segmentFile(File dir, int i) { return new File(dir, "capture-" + i + ".bin"); }
+}
@@ -0,0 +1,96 @@
+package com.yesremote.core;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * קורא הקלטה של FrameCapture (ראה CaptureFormat): כל הקטעים מהישן לחדש, רשומה אחרי רשומה.
+ * קטע שנקטע באמצע רשומה (האפליקציה נהרגה) נגמר בשקט ברשומה השלמה האחרונה.
+ */
+public final class CaptureReader {
+
+    public static final class Record {
+        public final int    src, dir;
+        public final long   tUs;      // זמן מתחילת ההקלטה
+        public final byte[] payload;  // בלי varint length
+        Record(int src, int dir, long tUs, byte[] payload) {
+            this.src = src; this.dir = dir; this.tUs = tUs; this.payload = payload;
+        }
+    }
+
+    private CaptureReader() {}
+
+    /** תיקיית הקלטה (כל הקטעים) או קובץ קטע בודד. */
+    public static List<Record> load(File f) throws IOException {
+        return f.isDirectory() ? readDir(f) : read(f);
+    }
+
+    /** כל הרשומות מכל הקטעים בתיקייה, לפי סדר הזמן. */
+    public static List<Record> readDir(File dir) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < CaptureFormat.SEGMENTS; i++) {
+            File f = CaptureFormat.segmentFile(dir, i);
+            if (f.exists()) files.add(f);
+        }
+        return read(files.toArray(new File[0]));
+    }
+
+    public static List<Record> read(File... segments) throws IOException {
+        long[] base = new long[segments.length];
+        for (int i = 0; i < segments.length; i++) base[i] = header(segments[i]);
+        Integer[] order = new Integer[segments.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(base[a], base[b]));
+
+        List<Record> out = new ArrayList<>();
+        long origin = segments.length == 0 ? 0 : base[order[0]];
+        for (int i : order) readSegment(segments[i], (base[i] - origin) / 1000, out);
+        return out;
+    }
+
+    private static long header(File f) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+            if (in.readInt() != CaptureFormat.MAGIC) throw new IOException("not a capture: " + f);
+            in.readLong();
+            return in.readLong();
+        }
+    }
+
+    private static void readSegment(File f, long startUs, List<Record> out) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            in.readInt(); in.readLong(); in.readLong();
+            long t = startUs;
+            while (true) {
+                int tag = in.read();
+                if (tag < 0) return;
+                try {
+                    t += readVarint(in);
+                    int n = (int) readVarint(in);
+                    if (n < 0 || n > FrameReader.MAX_FRAME) return;
+                    byte[] p = new byte[n];
+                    in.readFully(p);
+                    out.add(new Record(tag >> 1, tag & 1, t, p));
+                } catch (EOFException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("bad varint");
+    }
+}
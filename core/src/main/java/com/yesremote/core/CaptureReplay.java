@@ -0,0 +1,104 @@
+package com.yesremote.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * מריץ הקלטה של FrameCapture מחדש - לבדיקות רגרסיה וביצועים.
+ * decode: מזין את המסגרות הנכנסות מה-TV דרך FrameReader + RemoteProto.dispatch,
+ * בדיוק כמו לולאת הקריאה של TvClient. pump: כותב מסגרות לכיוון אחד ל-stream
+ * (socket אל ה-client או אל mock TV), אופציונלית בקצב המקורי.
+ *
+ * שורת פקודה: ./gradlew :mocktv:run --args="replay --capture=&lt;dir|capture-N.bin&gt; [--dump] [--decode=N]"
+ */
+public final class CaptureReplay {
+    private CaptureReplay() {}
+
+    /** תוצאת decode: מסגרות, בייטים וזמן כולל. */
+    public static final class Result {
+        public long frames, bytes, nanos;
+        @Override public String toString() {
+            double s = nanos / 1e9;
+            return frames + " frames, " + bytes + " bytes in " + (nanos / 1000) + "us"
+                + (s > 0 ? String.format(Locale.US, " (%.0f frames/s, %.1f MB/s)", frames / s, bytes / s / 1e6) : "");
+        }
+    }
+
+    /** stream אחד (varint length + payload) מכל הרשומות של src/dir. */
+    public static byte[] toStream(List<CaptureReader.Record> recs, int src, int dir) {
+        FrameBuffer b = new FrameBuffer(4096);
+        for (CaptureReader.Record r : recs) if (r.src == src && r.dir == dir) b.putFrame(r.payload);
+        return b.toByteArray();
+    }
+
+    /** מפענח את המסגרות הנכנסות של ה-remote (port 6466) iterations פעמים. */
+    public static Result decode(List<CaptureReader.Record> recs, RemoteProto.Receiver receiver, int iterations) throws IOException {
+        byte[] stream = toStream(recs, CaptureFormat.SRC_REMOTE, CaptureFormat.DIR_IN);
+        Result res = new Result();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            FrameReader reader = new FrameReader(new ByteArrayInputStream(stream), 512);
+            ByteBuffer m;
+            while ((m = reader.next()) != null) {
+                res.frames++;
+                res.bytes += m.remaining();
+                RemoteProto.dispatch(m, receiver);
+            }
+        }
+        res.nanos = System.nanoTime() - t0;
+        return res;
+    }
+
+    /**
+     * כותב ל-out את המסגרות של src/dir. realtime=true שומר על המרווחים המקוריים
+     * (למשל pings מה-TV); אחרת הכל ברצף, לבדיקת עומס.
+     */
+    public static int pump(List<CaptureReader.Record> recs, int src, int dir, OutputStream out, boolean realtime)
+            throws IOException, InterruptedException {
+        FrameBuffer b = new FrameBuffer(256);
+        long startNs = System.nanoTime(), firstUs = -1;
+        int n = 0;
+        for (CaptureReader.Record r : recs) {
+            if (r.src != src || r.dir != dir) continue;
+            if (realtime) {
+                if (firstUs < 0) firstUs = r.tUs;
+                long waitMs = (r.tUs - firstUs) / 1000 - (System.nanoTime() - startNs) / 1_000_000;
+                if (waitMs > 0) { out.flush(); Thread.sleep(waitMs); }
+            }
+            b.reset();
+            b.putFrame(r.payload);
+            b.writeTo(out);
+            n++;
+        }
+        out.flush();
+        return n;
+    }
+
+    /** "N records: remote in=.. out=.., pairing in=.. out=..". */
+    public static String summary(List<CaptureReader.Record> recs) {
+        int[] counts = new int[4];
+        for (CaptureReader.Record r : recs) counts[CaptureFormat.tag(r.src, r.dir)]++;
+        return recs.size() + " records: remote in=" + counts[0] + " out=" + counts[1]
+            + ", pairing in=" + counts[2] + " out=" + counts[3];
+    }
+
+    /** שורה לכל רשומה: זמן ב-ms, ערוץ, כיוון ו-payload ב-hex. */
+    public static void dump(List<CaptureReader.Record> recs, PrintStream out) {
+        StringBuilder sb = new StringBuilder();
+        for (CaptureReader.Record r : recs) {
+            sb.setLength(0);
+            sb.append(String.format(Locale.US, "%10.3f ", r.tUs / 1000.0))
+              .append(r.src == CaptureFormat.SRC_REMOTE ? "remote " : "pair   ")
+              .append(r.dir == CaptureFormat.DIR_IN ? "<< " : ">> ");
+            for (byte x : r.payload) {
+                sb.append(Character.forDigit((x >> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+            }
+            out.println(sb);
+        }
+    }
+}
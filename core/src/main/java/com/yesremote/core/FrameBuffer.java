@@ -0,0 +1,70 @@
+package com.yesremote.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * באפר כתיבה לשימוש חוזר: מצטברות בו מסגרות (varint length + payload)
+ * ונכתבות ל-stream ב-write אחד. לא thread-safe - שייך ל-thread אחד.
+ */
+public final class FrameBuffer {
+    private byte[] buf;
+    private int    len;
+
+    public FrameBuffer(int capacity) { buf = new byte[capacity]; }
+
+    public void reset()          { len = 0; }
+    public int  size()           { return len; }
+    public boolean isEmpty()     { return len == 0; }
+
+    public void putByte(int b) {
+        ensure(1);
+        buf[len++] = (byte) b;
+    }
+
+    public void put(byte[] b) { put(b, 0, b.length); }
+
+    public void put(byte[] b, int off, int n) {
+        ensure(n);
+        System.arraycopy(b, off, buf, len, n);
+        len += n;
+    }
+
+    public void putVarint(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) { buf[len++] = (byte) ((v & 0x7F) | 0x80); v >>>= 7; }
+        buf[len++] = (byte) v;
+    }
+
+    /** מסגרת מלאה: אורך כ-varint ואחריו התוכן. */
+    public void putFrame(byte[] payload) {
+        putVarint(payload.length);
+        put(payload);
+    }
+
+    public byte[] toByteArray() {
+        byte[] b = new byte[len];
+        System.arraycopy(buf, 0, b, 0, len);
+        return b;
+    }
+
+    /** מעתיק את התוכן ל-dst (באורך size() לפחות). */
+    public void writeInto(byte[] dst) { System.arraycopy(buf, 0, dst, 0, len); }
+
+    public void writeTo(OutputStream out) throws IOException {
+        if (len > 0) out.write(buf, 0, len);
+    }
+
+    public static int varintSize(long v) {
+        int n = 1;
+        while ((v & ~0x7FL) != 0) { n++; v >>>= 7; }
+        return n;
+    }
+
+    private void ensure(int n) {
+        if (len + n <= buf.length) return;
+        byte[] nb = new byte[Math.max(buf.length * 2, len + n)];
+        System.arraycopy(buf, 0, nb, 0, len);
+        buf = nb;
+    }
+}
@@ -0,0 +1,91 @@
+package com.yesremote.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * מפענח מסגרות (varint length + payload) מ-stream לתוך באפר אחד שגדל לפי הצורך.
+ * קורא בחתיכות גדולות ולא byte-byte, ומחזיר כל מסגרת כ-view על הבאפר - בלי העתקה.
+ * לא thread-safe - שייך ל-thread הקריאה של החיבור.
+ */
+public final class FrameReader {
+    // הגנה מפני אורך זבל (stream מסונכרן לא נכון)
+    public static final int MAX_FRAME = 64 * 1024;
+
+    private final InputStream in;
+    private byte[]     buf;
+    private ByteBuffer view;
+    private int start = 0, end = 0;   // מידע שעוד לא נצרך: buf[start, end)
+
+    public FrameReader(InputStream in, int capacity) {
+        this.in = in;
+        this.buf = new byte[capacity];
+        this.view = ByteBuffer.wrap(buf);
+    }
+
+    /**
+     * המסגרת הבאה: position=תחילת ה-payload, limit=סופו.
+     * ה-view תקף רק עד הקריאה הבאה ל-next(). מחזיר null ב-EOF.
+     * timeout באמצע מסגרת לא מאבד סנכרון - הנתונים נשארים בבאפר לקריאה הבאה.
+     */
+    public ByteBuffer next() throws IOException {
+        int len, hdr;
+        while (true) {
+            len = 0; hdr = 0;
+            int shift = 0;
+            boolean done = false;
+            for (int p = start; p < end; p++) {
+                int b = buf[p] & 0xFF;
+                len |= (b & 0x7F) << shift;
+                hdr++;
+                if ((b & 0x80) == 0) { done = true; break; }
+                shift += 7;
+                if (shift > 28) throw new IOException("bad frame length");
+            }
+            if (done) break;
+            if (!fill(end - start + 1)) return null;
+        }
+        if (len < 0 || len > MAX_FRAME) throw new IOException("frame too large: " + len);
+        if (!fill(hdr + len)) return null;
+        int off = start + hdr;
+        start = off + len;
+        view.clear();
+        view.position(off);
+        view.limit(off + len);
+        return view;
+    }
+
+    /** מוודא שיש לפחות n בתים זמינים מ-start. false ב-EOF. */
+    private boolean fill(int n) throws IOException {
+        if (end - start >= n) return true;
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, end - start);
+            end -= start; start = 0;
+        }
+        if (n > buf.length) {
+            byte[] nb = new byte[Math.max(buf.length * 2, n)];
+            System.arraycopy(buf, 0, nb, 0, end);
+            buf = nb;
+            view = ByteBuffer.wrap(buf);
+        }
+        while (end < n) {
+            int r = in.read(buf, end, buf.length - end);
+            if (r < 0) return false;
+            end += r;
+        }
+        return true;
+    }
+
+    /** קורא varint מ-b ומקדם את ה-position. */
+    public static long readVarint(ByteBuffer b) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!b.hasRemaining()) throw new IOException("truncated varint");
+            int x = b.get() & 0xFF;
+            v |= (long) (x & 0x7F) << shift;
+            if ((x & 0x80) == 0) return v;
+        }
+        throw new IOException("bad varint");
+    }
+}
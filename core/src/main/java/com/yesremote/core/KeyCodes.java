@@ -0,0 +1,23 @@
+package com.yesremote.core;
+
+/** keycodes של Android (KeyEvent.KEYCODE_*) שהשלט שולח. */
+public final class KeyCodes {
+    public static final int
+        KEY_0=7,  KEY_1=8,  KEY_2=9,  KEY_3=10, KEY_4=11,
+        KEY_5=12, KEY_6=13, KEY_7=14, KEY_8=15, KEY_9=16,
+        KEY_UP=19, KEY_DOWN=20, KEY_LEFT=21, KEY_RIGHT=22,
+        KEY_OK=23, KEY_BACK=4, KEY_HOME=3, KEY_MENU=82,
+        KEY_POWER=26,
+        KEY_VOL_UP=24, KEY_VOL_DOWN=25, KEY_MUTE=164,
+        KEY_CH_UP=166, KEY_CH_DOWN=167,
+        KEY_LAST_CHANNEL=229;
+
+    // כל המקשים למעלה - KeyFrames מקודד אותם מראש
+    static final int[] ALL = {
+        KEY_0, KEY_1, KEY_2, KEY_3, KEY_4, KEY_5, KEY_6, KEY_7, KEY_8, KEY_9,
+        KEY_UP, KEY_DOWN, KEY_LEFT, KEY_RIGHT, KEY_OK, KEY_BACK, KEY_HOME, KEY_MENU,
+        KEY_POWER, KEY_VOL_UP, KEY_VOL_DOWN, KEY_MUTE, KEY_CH_UP, KEY_CH_DOWN, KEY_LAST_CHANNEL
+    };
+
+    private KeyCodes() {}
+}
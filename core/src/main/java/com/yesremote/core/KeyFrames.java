@@ -0,0 +1,53 @@
+package com.yesremote.core;
+
+/**
+ * מסגרות RemoteKeyInject מקודדות מראש (כולל prefix האורך) לכל ה-KEY_* ולכל כיוון.
+ * נבנות פעם אחת בטעינת המחלקה; keycode אחר מקודד ישירות לבאפר היעד בלי הקצאות.
+ */
+public final class KeyFrames {
+    // RemoteKeyInject.direction
+    public static final int DIR_START_LONG = 1, DIR_END_LONG = 2, DIR_SHORT = 3;
+
+    // RemoteMessage.remote_key_inject = field 10 (LEN)
+    private static final int TAG_KEY_INJECT = 0x52;
+    private static final int MAX_KC = 256;
+
+
+    // TABLE[dir][kc] - null אם ה-keycode לא ידוע
+    private static final byte[][][] TABLE = new byte[DIR_SHORT + 1][MAX_KC][];
+    static {
+        FrameBuffer b = new FrameBuffer(16);
+        for (int dir = DIR_START_LONG; dir <= DIR_SHORT; dir++) {
+            for (int kc : KeyCodes.ALL) {
+                b.reset();
+                encode(kc, dir, b);
+                byte[] f = new byte[b.size()];
+                b.writeInto(f);
+                TABLE[dir][kc] = f;
+            }
+        }
+    }
+
+    private KeyFrames() {}
+
+    /** כותב מסגרת מלאה (אורך + RemoteMessage) של מקש לבאפר. */
+    public static void write(int kc, int dir, FrameBuffer dst) {
+        if (kc >= 0 && kc < MAX_KC && dir > 0 && dir <= DIR_SHORT) {
+            byte[] f = TABLE[dir][kc];
+            if (f != null) { dst.put(f); return; }
+        }
+        encode(kc, dir, dst);
+    }
+
+    // package-private לבדיקות (הטבלה מול הקידוד הישיר)
+    static void encode(int kc, int dir, FrameBuffer dst) {
+        // RemoteKeyInject { key_code=1 (varint), direction=2 (varint) }
+        int inner = 1 + FrameBuffer.varintSize(kc) + 1 + FrameBuffer.varintSize(dir);
+        int outer = 1 + FrameBuffer.varintSize(inner) + inner;
+        dst.putVarint(outer);
+        dst.putByte(TAG_KEY_INJECT);
+        dst.putVarint(inner);
+        dst.putByte(0x08); dst.putVarint(kc);
+        dst.putByte(0x10); dst.putVarint(dir);
+    }
+}
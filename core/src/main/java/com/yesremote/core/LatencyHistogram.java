@@ -0,0 +1,116 @@
+package com.yesremote.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * היסטוגרמת זמנים בגודל קבוע (מיקרו-שניות), בלי הקצאות ב-record.
+ * דליים log-linear: 0..15 מדויקים, ומעל זה 8 דליים לכל חזקה של 2 -
+ * שגיאה יחסית של עד 12.5%, מספיק ל-p50/p99. בטוח לקריאה מכמה threads.
+ */
+public final class LatencyHistogram {
+    private static final int SUB     = 8;   // דליים לכל חזקה של 2
+    private static final int LINEAR  = 16;  // ערכים 0..15 בדלי משלהם
+    private static final int BUCKETS = LINEAR + (63 - 4) * SUB;
+
+    public final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum   = new AtomicLong();
+    private final AtomicLong max   = new AtomicLong();
+
+    public LatencyHistogram(String name) { this.name = name; }
+
+    public void record(long us) {
+        if (us < 0) us = 0;
+        counts.incrementAndGet(index(us));
+        count.incrementAndGet();
+        sum.addAndGet(us);
+        long m;
+        while (us > (m = max.get()) && !max.compareAndSet(m, us)) { }
+    }
+
+    public void recordNanos(long ns) { record(ns / 1000); }
+
+    public long count() { return count.get(); }
+    public long max()   { return max.get(); }
+    public long mean()  { long n = count.get(); return n == 0 ? 0 : sum.get() / n; }
+
+    /** הערך (us) שמתחתיו p אחוז מהדגימות; 0 אם אין דגימות. */
+    public long percentile(double p) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(n * p / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upper(i), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0); sum.set(0); max.set(0);
+    }
+
+    public static void appendHeader(StringBuilder sb) {
+        sb.append(pad("name", 20)).append(pad("n", 7))
+          .append(pad("p50", 9)).append(pad("p90", 9)).append(pad("p99", 9)).append("max\n");
+    }
+
+    /** "name n p50 p90 p99 max" ב-ms, שורה אחת. */
+    public void appendText(StringBuilder sb) {
+        sb.append(pad(name, 20)).append(pad(Long.toString(count()), 7));
+        ms(sb, percentile(50)); ms(sb, percentile(90)); ms(sb, percentile(99)); ms(sb, max());
+        sb.append('\n');
+    }
+
+    public void appendJson(StringBuilder sb) {
+        sb.append('"').append(name).append("\":{\"unit\":\"us\",\"count\":").append(count())
+          .append(",\"mean\":").append(mean())
+          .append(",\"p50\":").append(percentile(50))
+          .append(",\"p90\":").append(percentile(90))
+          .append(",\"p99\":").append(percentile(99))
+          .append(",\"max\":").append(max())
+          .append(",\"buckets\":[");
+        boolean first = true;
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i);
+            if (c == 0) continue;
+            if (!first) sb.append(',');
+            first = false;
+            sb.append('[').append(lower(i)).append(',').append(c).append(']');
+        }
+        sb.append("]}");
+    }
+
+    static int index(long v) {
+        if (v < LINEAR) return (int) v;
+        int e = 63 - Long.numberOfLeadingZeros(v);            // >= 4
+        int sub = (int) (v >>> (e - 3)) & (SUB - 1);
+        return LINEAR + (e - 4) * SUB + sub;
+    }
+
+    static long lower(int i) {
+        if (i < LINEAR) return i;
+        int e = (i - LINEAR) / SUB + 4, sub = (i - LINEAR) % SUB;
+        return (long) (SUB + sub) << (e - 3);
+    }
+
+    static long upper(int i) {
+        if (i < LINEAR) return i;
+        return lower(i) + (1L << ((i - LINEAR) / SUB + 1)) - 1;
+    }
+
+    private static void ms(StringBuilder sb, long us) {
+        String s = (us / 1000) + "." + (char) ('0' + (us / 100) % 10) + (char) ('0' + (us / 10) % 10);
+        sb.append(pad(s, 9));
+    }
+
+    private static String pad(String s, int w) {
+        StringBuilder b = new StringBuilder(s);
+        while (b.length() < w) b.append(' ');
+        return b.toString();
+    }
+}
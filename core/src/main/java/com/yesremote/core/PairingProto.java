@@ -0,0 +1,139 @@
+package com.yesremote.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Codec ל-PairingMessage של פורט 6467.
+ * כל הודעה: protocol_version=2, status=200 ואחריהם שדה התוכן.
+ */
+public final class PairingProto {
+    public static final int STATUS_OK = 200, STATUS_ERROR = 400, STATUS_BAD_SECRET = 402;
+
+    // שדות התוכן של PairingMessage - ראה field(ByteBuffer)
+    public static final int REQUEST = 10, REQUEST_ACK = 11, OPTION = 20,
+                            CONFIGURATION = 30, CONFIGURATION_ACK = 31, SECRET = 40, SECRET_ACK = 41;
+
+    // PairingMessage fields
+    private static final int F_PROTOCOL_VERSION = 1;
+    private static final int F_STATUS           = 2;
+
+    // PairingEncoding { type=HEXADECIMAL(3), symbol_length=6 }
+    private static final byte[] HEX_ENCODING = {8, 3, 16, 6};
+    private static final int ROLE_INPUT = 1;
+
+    private PairingProto() {}
+
+    /** PairingRequest { service_name, client_name } */
+    public static byte[] pairingRequest(String serviceName, String clientName) {
+        FrameBuffer b = new FrameBuffer(32);
+        RemoteProto.stringField(b, 1, serviceName);
+        RemoteProto.stringField(b, 2, clientName);
+        return message(REQUEST, b);
+    }
+
+    /** PairingOption { input_encodings=[hex/6], preferred_role=INPUT } */
+    public static byte[] options() {
+        FrameBuffer b = new FrameBuffer(16);
+        RemoteProto.bytesField(b, 1, HEX_ENCODING);
+        RemoteProto.varintField(b, 3, ROLE_INPUT);
+        return message(OPTION, b);
+    }
+
+    /** PairingConfiguration { encoding=hex/6, client_role=INPUT } */
+    public static byte[] configuration() {
+        FrameBuffer b = new FrameBuffer(16);
+        RemoteProto.bytesField(b, 1, HEX_ENCODING);
+        RemoteProto.varintField(b, 2, ROLE_INPUT);
+        return message(CONFIGURATION, b);
+    }
+
+    /** PairingSecret { secret } */
+    public static byte[] secret(byte[] secret) {
+        FrameBuffer b = new FrameBuffer(secret.length + 4);
+        RemoteProto.bytesField(b, 1, secret);
+        return message(SECRET, b);
+    }
+
+    // ---- תשובות, צד ה-TV (mock TV ובדיקות) ----
+
+    /** PairingRequestAck { server_name } */
+    public static byte[] requestAck(String serverName) {
+        FrameBuffer b = new FrameBuffer(32);
+        RemoteProto.stringField(b, 1, serverName);
+        return message(REQUEST_ACK, b);
+    }
+
+    /** PairingConfigurationAck {} */
+    public static byte[] configurationAck() { return message(CONFIGURATION_ACK, new FrameBuffer(0)); }
+
+    /** PairingSecretAck { secret } */
+    public static byte[] secretAck(byte[] secret) {
+        FrameBuffer b = new FrameBuffer(secret.length + 4);
+        RemoteProto.bytesField(b, 1, secret);
+        return message(SECRET_ACK, b);
+    }
+
+    /** הודעה עם status בלבד (למשל STATUS_BAD_SECRET). */
+    public static byte[] error(int status) {
+        FrameBuffer m = new FrameBuffer(8);
+        RemoteProto.varintField(m, F_PROTOCOL_VERSION, 2);
+        RemoteProto.varintField(m, F_STATUS, status);
+        return m.toByteArray();
+    }
+
+    private static byte[] message(int field, FrameBuffer body) {
+        FrameBuffer m = new FrameBuffer(body.size() + 12);
+        RemoteProto.varintField(m, F_PROTOCOL_VERSION, 2);
+        RemoteProto.varintField(m, F_STATUS, STATUS_OK);
+        RemoteProto.bytesField(m, field, body.toByteArray());
+        return m.toByteArray();
+    }
+
+    /** שדה התוכן של ההודעה (REQUEST, OPTION, ...), 0 אם אין. לא מזיז את msg. */
+    public static int field(ByteBuffer msg) throws IOException {
+        ByteBuffer b = msg.duplicate();
+        while (b.hasRemaining()) {
+            int key = (int) FrameReader.readVarint(b);
+            int f = key >>> 3;
+            if ((key & 7) == RemoteProto.WT_LEN && f >= REQUEST) return f;
+            RemoteProto.skip(b, key & 7);
+        }
+        return 0;
+    }
+
+    /** ה-secret מתוך PairingSecret או PairingSecretAck, null אם אין. */
+    public static byte[] secretOf(ByteBuffer msg) throws IOException {
+        ByteBuffer b = msg.duplicate();
+        while (b.hasRemaining()) {
+            int key = (int) FrameReader.readVarint(b);
+            int f = key >>> 3;
+            if ((key & 7) == RemoteProto.WT_LEN && (f == SECRET || f == SECRET_ACK)) {
+                int end = (int) FrameReader.readVarint(b) + b.position();
+                while (b.position() < end) {
+                    int k = (int) FrameReader.readVarint(b);
+                    if (k == (1 << 3 | RemoteProto.WT_LEN)) {
+                        byte[] out = new byte[(int) FrameReader.readVarint(b)];
+                        b.get(out);
+                        return out;
+                    }
+                    RemoteProto.skip(b, k & 7);
+                }
+                return null;
+            }
+            RemoteProto.skip(b, key & 7);
+        }
+        return null;
+    }
+
+    /** ה-status של תשובה מה-TV (0 אם חסר). לא מזיז את ה-position של msg. */
+    public static int status(ByteBuffer msg) throws IOException {
+        ByteBuffer b = msg.duplicate();
+        while (b.hasRemaining()) {
+            int key = (int) FrameReader.readVarint(b);
+            if (key == (F_STATUS << 3 | RemoteProto.WT_VARINT)) return (int) FrameReader.readVarint(b);
+            RemoteProto.skip(b, key & 7);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,41 @@
+package com.yesremote.core;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.interfaces.RSAPublicKey;
+
+/**
+ * ה-secret של שלב ה-PIN ב-pairing:
+ * SHA256(clientMod + clientExp + serverMod + serverExp + hex2bin(4 תווים אחרונים של ה-PIN)).
+ */
+public final class PairingSecret {
+    private PairingSecret() {}
+
+    /** @param pin ה-PIN כפי שמוצג ב-TV (6 תווים HEX) */
+    public static byte[] compute(RSAPublicKey client, RSAPublicKey server, String pin) throws GeneralSecurityException {
+        if (pin.length() < 4) throw new IllegalArgumentException("pin too short");
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        sha.update(unsigned(client.getModulus()));
+        sha.update(unsigned(client.getPublicExponent()));
+        sha.update(unsigned(server.getModulus()));
+        sha.update(unsigned(server.getPublicExponent()));
+        sha.update(hexToBytes(pin.substring(pin.length() - 4)));
+        return sha.digest();
+    }
+
+    static byte[] hexToBytes(String hex) {
+        int len = hex.length();
+        byte[] out = new byte[len / 2];
+        for (int i = 0; i < len; i += 2)
+            out[i/2] = (byte) Integer.parseInt(hex.substring(i, i+2), 16);
+        return out;
+    }
+
+    // BigInteger.toByteArray בלי ה-0 המוביל של הסימן
+    static byte[] unsigned(BigInteger n) {
+        byte[] b = n.abs().toByteArray();
+        if (b[0] == 0) { byte[] t = new byte[b.length-1]; System.arraycopy(b,1,t,0,t.length); return t; }
+        return b;
+    }
+}
@@ -0,0 +1,328 @@
+package com.yesremote.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Codec קל ל-RemoteMessage של פרוטוקול Android TV Remote v2 (פורט 6466).
+ * קידוד: payloads מוכנים ל-ConnectionWriter (מקשים - ב-KeyFrames).
+ * פענוח: dispatch לפי field tag ישירות מה-ByteBuffer, בלי אובייקטי ביניים;
+ * הודעות שלא מעניינות אותנו מדולגות לפי האורך בלבד.
+ */
+public final class RemoteProto {
+    // RemoteMessage fields
+    public static final int F_CONFIGURE       = 1;
+    public static final int F_SET_ACTIVE      = 2;
+    public static final int F_ERROR           = 3;
+    public static final int F_PING_REQUEST    = 8;
+    public static final int F_PING_RESPONSE   = 9;
+    public static final int F_KEY_INJECT      = 10;
+    public static final int F_IME_KEY_INJECT  = 20;
+    public static final int F_IME_BATCH_EDIT  = 21;
+    public static final int F_IME_SHOW        = 22;
+    public static final int F_START           = 40;
+    public static final int F_SET_VOLUME      = 50;
+    public static final int F_APP_LINK        = 90;
+
+    public static final int WT_VARINT = 0, WT_I64 = 1, WT_LEN = 2, WT_I32 = 5;
+
+    // קוד הגרסה שה-TV מצפה לו ב-configure / set-active
+    public static final int PROTOCOL_CODE = 622;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * callbacks של הודעות מה-TV (ושל הודעות ה-client, בצד של mock TV).
+     * ברירת מחדל - להתעלם. נקרא מ-thread הקריאה.
+     */
+    public interface Receiver {
+        default void onConfigure(int code1) {}
+        default void onSetActive(int active) {}
+        default void onRemoteError(boolean value1) {}
+        default void onPing(long val1) {}
+        default void onPingResponse(long val1) {}
+        default void onKeyInject(int kc, int dir) {}
+        default void onVolume(int level, int max, boolean muted) {}
+        default void onImeKeyInject(int imeCounter, int fieldCounter, String appPackage) {}
+        default void onImeBatchEdit(int imeCounter, int fieldCounter) {}
+        default void onImeShow(int fieldCounter) {}
+        default void onStart(boolean started) {}
+        default void onUnknown(int field, int size) {}
+    }
+
+    private RemoteProto() {}
+
+    // ---- encode ----
+
+    /** RemoteConfigure { code1, device_info { unknown1=1, unknown2="1", package_name, app_version } } */
+    public static byte[] configure(int code1, String packageName, String appVersion) {
+        FrameBuffer info = new FrameBuffer(64);
+        varintField(info, 3, 1);
+        stringField(info, 4, "1");
+        stringField(info, 5, packageName);
+        stringField(info, 6, appVersion);
+        FrameBuffer cfg = new FrameBuffer(64);
+        varintField(cfg, 1, code1);
+        bytesField(cfg, 2, info.toByteArray());
+        return message(F_CONFIGURE, cfg);
+    }
+
+    /** RemoteSetActive { active } */
+    public static byte[] setActive(int active) {
+        FrameBuffer b = new FrameBuffer(8);
+        varintField(b, 1, active);
+        return message(F_SET_ACTIVE, b);
+    }
+
+    /** RemoteAppLinkLaunchRequest { app_link } */
+    public static byte[] appLink(String link) {
+        FrameBuffer b = new FrameBuffer(64);
+        stringField(b, 1, link);
+        return message(F_APP_LINK, b);
+    }
+
+    /**
+     * RemoteImeBatchEdit { ime_counter, field_counter, edit_info { insert=1, text_field_status { start, end, value } } }
+     * מחליף את כל תוכן השדה ב-text, הסמן בסופו.
+     */
+    public static byte[] imeBatchEdit(int imeCounter, int fieldCounter, String text) {
+        int cursor = Math.max(0, text.length() - 1);
+        FrameBuffer obj = new FrameBuffer(32 + text.length() * 3);
+        varintField(obj, 1, cursor);
+        varintField(obj, 2, cursor);
+        stringField(obj, 3, text);
+        FrameBuffer edit = new FrameBuffer(obj.size() + 8);
+        varintField(edit, 1, 1);
+        bytesField(edit, 2, obj.toByteArray());
+        FrameBuffer b = new FrameBuffer(edit.size() + 16);
+        varintField(b, 1, imeCounter);
+        varintField(b, 2, fieldCounter);
+        bytesField(b, 3, edit.toByteArray());
+        return message(F_IME_BATCH_EDIT, b);
+    }
+
+    /** RemotePingResponse { val1 } */
+    public static byte[] pingResponse(long val1) {
+        FrameBuffer b = new FrameBuffer(12);
+        varintField(b, 1, val1);
+        return message(F_PING_RESPONSE, b);
+    }
+
+    /** RemoteKeyInject { key_code, direction } - בלי prefix האורך (ראה KeyFrames) */
+    public static byte[] keyInject(int kc, int dir) {
+        FrameBuffer b = new FrameBuffer(8);
+        varintField(b, 1, kc);
+        varintField(b, 2, dir);
+        return message(F_KEY_INJECT, b);
+    }
+
+    // ---- encode, צד ה-TV (mock TV ובדיקות) ----
+
+    /** RemotePingRequest { val1 } */
+    public static byte[] pingRequest(long val1) {
+        FrameBuffer b = new FrameBuffer(12);
+        varintField(b, 1, val1);
+        return message(F_PING_REQUEST, b);
+    }
+
+    /** RemoteStart { started } */
+    public static byte[] start(boolean started) {
+        FrameBuffer b = new FrameBuffer(4);
+        varintField(b, 1, started ? 1 : 0);
+        return message(F_START, b);
+    }
+
+    /** RemoteSetVolume { volume_max=6, volume_level=7, volume_muted=8 } */
+    public static byte[] setVolume(int level, int max, boolean muted) {
+        FrameBuffer b = new FrameBuffer(12);
+        varintField(b, 6, max);
+        varintField(b, 7, level);
+        varintField(b, 8, muted ? 1 : 0);
+        return message(F_SET_VOLUME, b);
+    }
+
+    /** RemoteError { value1=true } - ה-TV דוחה את ההודעה האחרונה */
+    public static byte[] remoteError() {
+        FrameBuffer b = new FrameBuffer(4);
+        varintField(b, 1, 1);
+        return message(F_ERROR, b);
+    }
+
+    private static byte[] message(int field, FrameBuffer body) {
+        FrameBuffer m = new FrameBuffer(body.size() + 8);
+        bytesField(m, field, body.toByteArray());
+        return m.toByteArray();
+    }
+
+    public static void varintField(FrameBuffer b, int field, long v) {
+        b.putVarint(field << 3 | WT_VARINT);
+        b.putVarint(v);
+    }
+
+    public static void bytesField(FrameBuffer b, int field, byte[] v) {
+        b.putVarint(field << 3 | WT_LEN);
+        b.putVarint(v.length);
+        b.put(v);
+    }
+
+    public static void stringField(FrameBuffer b, int field, String s) {
+        bytesField(b, field, s.getBytes(UTF8));
+    }
+
+    // ---- decode ----
+
+    /** מפענח RemoteMessage אחד (position..limit של msg) וקורא ל-callback המתאים. */
+    public static void dispatch(ByteBuffer msg, Receiver r) throws IOException {
+        int limit = msg.limit();
+        while (msg.position() < limit) {
+            int key = (int) FrameReader.readVarint(msg);
+            if ((key & 7) != WT_LEN) { skip(msg, key & 7); continue; }
+            int field = key >>> 3;
+            int end = enter(msg);
+            switch (field) {
+                case F_CONFIGURE:      decodeConfigure(msg, r); break;
+                case F_SET_ACTIVE:     r.onSetActive((int) firstVarint(msg, 1)); break;
+                case F_ERROR:          r.onRemoteError(firstVarint(msg, 1) != 0); break;
+                case F_PING_REQUEST:   r.onPing(firstVarint(msg, 1)); break;
+                case F_PING_RESPONSE:  r.onPingResponse(firstVarint(msg, 1)); break;
+                case F_KEY_INJECT:     decodeKeyInject(msg, r); break;
+                case F_IME_KEY_INJECT: decodeImeKeyInject(msg, r); break;
+                case F_IME_BATCH_EDIT: decodeImeBatchEdit(msg, r); break;
+                case F_IME_SHOW:       decodeImeShow(msg, r); break;
+                case F_START:          r.onStart(firstVarint(msg, 1) != 0); break;
+                case F_SET_VOLUME:     decodeVolume(msg, r); break;
+                default:               r.onUnknown(field, end - msg.position());
+            }
+            leave(msg, end, limit);
+        }
+    }
+
+    private static void decodeConfigure(ByteBuffer b, Receiver r) throws IOException {
+        r.onConfigure((int) firstVarint(b, 1));
+    }
+
+    private static void decodeKeyInject(ByteBuffer b, Receiver r) throws IOException {
+        int kc = 0, dir = 0;
+        while (b.hasRemaining()) {
+            int key = (int) FrameReader.readVarint(b);
+            if      (key == (1 << 3 | WT_VARINT)) kc  = (int) FrameReader.readVarint(b);
+            else if (key == (2 << 3 | WT_VARINT)) dir = (int) FrameReader.readVarint(b);
+            else skip(b, key & 7);
+        }
+        r.onKeyInject(kc, dir);
+    }
+
+    private static void decodeVolume(ByteBuffer b, Receiver r) throws IOException {
+        // RemoteSetVolumeLevel { volume_max=6, volume_level=7, volume_muted=8 }
+        int level = 0, max = 0;
+        boolean muted = false;
+        while (b.hasRemaining()) {
+            int key = (int) FrameReader.readVarint(b);
+            if      (key == (6 << 3 | WT_VARINT)) max   = (int) FrameReader.readVarint(b);
+            else if (key == (7 << 3 | WT_VARINT)) level = (int) FrameReader.readVarint(b);
+            else if (key == (8 << 3 | WT_VARINT)) muted = FrameReader.readVarint(b) != 0;
+            else skip(b, key & 7);
+        }
+        r.onVolume(level, max, muted);
+    }
+
+    private static void decodeImeKeyInject(ByteBuffer b, Receiver r) throws IOException {
+        // RemoteImeKeyInject { app_info=1 { counter=1, app_package=12 }, text_field_status=2 { counter_field=1 } }
+        int imeCounter = 0, fieldCounter = 0;
+        String pkg = null;
+        int limit = b.limit();
+        while (b.position() < limit) {
+            int key = (int) FrameReader.readVarint(b);
+            if (key == (1 << 3 | WT_LEN)) {
+                int end = enter(b);
+                while (b.hasRemaining()) {
+                    int k = (int) FrameReader.readVarint(b);
+                    if      (k == (1 << 3 | WT_VARINT)) imeCounter = (int) FrameReader.readVarint(b);
+                    else if (k == (12 << 3 | WT_LEN))   pkg = readString(b);
+                    else skip(b, k & 7);
+                }
+                leave(b, end, limit);
+            } else if (key == (2 << 3 | WT_LEN)) {
+                int end = enter(b);
+                fieldCounter = (int) firstVarint(b, 1);
+                leave(b, end, limit);
+            } else skip(b, key & 7);
+        }
+        r.onImeKeyInject(imeCounter, fieldCounter, pkg);
+    }
+
+    private static void decodeImeBatchEdit(ByteBuffer b, Receiver r) throws IOException {
+        int imeCounter = 0, fieldCounter = 0;
+        while (b.hasRemaining()) {
+            int key = (int) FrameReader.readVarint(b);
+            if      (key == (1 << 3 | WT_VARINT)) imeCounter   = (int) FrameReader.readVarint(b);
+            else if (key == (2 << 3 | WT_VARINT)) fieldCounter = (int) FrameReader.readVarint(b);
+            else skip(b, key & 7);
+        }
+        r.onImeBatchEdit(imeCounter, fieldCounter);
+    }
+
+    private static void decodeImeShow(ByteBuffer b, Receiver r) throws IOException {
+        // RemoteImeShowRequest { remote_text_field_status=2 { counter_field=1 } }
+        int fieldCounter = 0, limit = b.limit();
+        while (b.position() < limit) {
+            int key = (int) FrameReader.readVarint(b);
+            if (key == (2 << 3 | WT_LEN)) {
+                int end = enter(b);
+                fieldCounter = (int) firstVarint(b, 1);
+                leave(b, end, limit);
+            } else skip(b, key & 7);
+        }
+        r.onImeShow(fieldCounter);
+    }
+
+    /** ערך ה-varint הראשון בשדה field בתוך ההודעה הנוכחית (0 אם אין). */
+    private static long firstVarint(ByteBuffer b, int field) throws IOException {
+        long v = 0;
+        boolean found = false;
+        while (b.hasRemaining()) {
+            int key = (int) FrameReader.readVarint(b);
+            if (!found && key == (field << 3 | WT_VARINT)) { v = FrameReader.readVarint(b); found = true; }
+            else skip(b, key & 7);
+        }
+        return v;
+    }
+
+    /** קורא אורך של שדה LEN ומצמצם את ה-limit לגוף שלו. מחזיר את סוף הגוף. */
+    private static int enter(ByteBuffer b) throws IOException {
+        int len = (int) FrameReader.readVarint(b);
+        int end = b.position() + len;
+        if (len < 0 || end > b.limit()) throw new IOException("truncated field");
+        b.limit(end);
+        return end;
+    }
+
+    private static void leave(ByteBuffer b, int end, int limit) {
+        b.limit(limit);
+        b.position(end);
+    }
+
+    private static String readString(ByteBuffer b) throws IOException {
+        int len = (int) FrameReader.readVarint(b);
+        if (len < 0 || len > b.remaining()) throw new IOException("truncated string");
+        String s = new String(b.array(), b.arrayOffset() + b.position(), len, UTF8);
+        b.position(b.position() + len);
+        return s;
+    }
+
+    public static void skip(ByteBuffer b, int wireType) throws IOException {
+        switch (wireType) {
+            case WT_VARINT: FrameReader.readVarint(b); break;
+            case WT_I64:    advance(b, 8); break;
+            case WT_LEN:    advance(b, (int) FrameReader.readVarint(b)); break;
+            case WT_I32:    advance(b, 4); break;
+            default: throw new IOException("bad wire type " + wireType);
+        }
+    }
+
+    private static void advance(ByteBuffer b, int n) throws IOException {
+        if (n < 0 || n > b.remaining()) throw new IOException("truncated field");
+        b.position(b.position() + n);
+    }
+}
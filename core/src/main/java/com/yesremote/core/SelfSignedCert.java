@@ -0,0 +1,96 @@
+package com.yesremote.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * יוצר זוג מפתחות RSA ותעודת X.509 v3 חתומה עצמית, בלי BouncyCastle:
+ * ה-TBSCertificate מקודד ב-DER ידנית ונחתם ב-SHA256withRSA.
+ */
+public final class SelfSignedCert {
+    private static final int  KEY_BITS   = 2048;
+    private static final long VALIDITY_MS = 10L * 365 * 24 * 60 * 60 * 1000;
+    // sha256WithRSAEncryption 1.2.840.113549.1.1.11
+    private static final byte[] OID_SHA256_RSA = {0x2A, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xF7, 0x0D, 0x01, 0x01, 0x0B};
+    // commonName 2.5.4.3
+    private static final byte[] OID_CN = {0x55, 0x04, 0x03};
+
+    private SelfSignedCert() {}
+
+    public static KeyPair generateKeyPair(SecureRandom rnd) throws GeneralSecurityException {
+        KeyPairGenerator g = KeyPairGenerator.getInstance("RSA");
+        g.initialize(KEY_BITS, rnd);
+        return g.generateKeyPair();
+    }
+
+    public static X509Certificate create(KeyPair kp, String cn, SecureRandom rnd) throws GeneralSecurityException {
+        long now = System.currentTimeMillis();
+        byte[] algId = seq(cat(tlv(0x06, OID_SHA256_RSA), tlv(0x05, new byte[0])));
+        byte[] name  = seq(tlv(0x31, seq(cat(tlv(0x06, OID_CN), tlv(0x0C, utf8(cn))))));
+        byte[] validity = seq(cat(time(now - 24L * 60 * 60 * 1000), time(now + VALIDITY_MS)));
+        byte[] serial = new BigInteger(63, rnd).add(BigInteger.ONE).toByteArray();
+        byte[] tbs = seq(cat(
+            tlv(0xA0, tlv(0x02, new byte[]{2})),     // version v3
+            tlv(0x02, serial),
+            algId, name, validity, name,
+            kp.getPublic().getEncoded()));           // SubjectPublicKeyInfo כבר ב-DER
+
+        Signature sig = Signature.getInstance("SHA256withRSA");
+        sig.initSign(kp.getPrivate());
+        sig.update(tbs);
+        byte[] s = sig.sign();
+        byte[] bits = new byte[s.length + 1];        // BIT STRING: 0 unused bits
+        System.arraycopy(s, 0, bits, 1, s.length);
+
+        byte[] der = seq(cat(tbs, algId, tlv(0x03, bits)));
+        return (X509Certificate) CertificateFactory.getInstance("X.509")
+            .generateCertificate(new ByteArrayInputStream(der));
+    }
+
+    // UTCTime עד 2049, GeneralizedTime אחרי
+    private static byte[] time(long ms) {
+        Date d = new Date(ms);
+        SimpleDateFormat f = new SimpleDateFormat("yyyy", Locale.US);
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        boolean utc = Integer.parseInt(f.format(d)) < 2050;
+        f.applyPattern(utc ? "yyMMddHHmmss'Z'" : "yyyyMMddHHmmss'Z'");
+        return tlv(utc ? 0x17 : 0x18, f.format(d).getBytes(java.nio.charset.StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] utf8(String s) { return s.getBytes(java.nio.charset.StandardCharsets.UTF_8); }
+
+    private static byte[] seq(byte[] body) { return tlv(0x30, body); }
+
+    private static byte[] tlv(int tag, byte[] value) {
+        ByteArrayOutputStream b = new ByteArrayOutputStream(value.length + 6);
+        b.write(tag);
+        int n = value.length;
+        if (n < 0x80) {
+            b.write(n);
+        } else {
+            int bytes = n > 0xFFFFFF ? 4 : n > 0xFFFF ? 3 : n > 0xFF ? 2 : 1;
+            b.write(0x80 | bytes);
+            for (int i = bytes - 1; i >= 0; i--) b.write(n >>> (8 * i));
+        }
+        b.write(value, 0, n);
+        return b.toByteArray();
+    }
+
+    private static byte[] cat(byte[]... parts) {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        for (byte[] p : parts) b.write(p, 0, p.length);
+        return b.toByteArray();
+    }
+}
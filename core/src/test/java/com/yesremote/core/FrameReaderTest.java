@@ -0,0 +1,119 @@
+package com.yesremote.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class FrameReaderTest {
+
+    /** מחזיר לכל היותר chunk בתים בכל read - כמו TCP שמפצל איפה שבא לו. */
+    private static InputStream trickle(byte[] data, int chunk) {
+        return new ByteArrayInputStream(data) {
+            @Override public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, chunk));
+            }
+        };
+    }
+
+    private static byte[] payload(int n) {
+        byte[] p = new byte[n];
+        for (int i = 0; i < n; i++) p[i] = (byte) (i * 31 + 7);
+        return p;
+    }
+
+    private static byte[] frames(byte[]... payloads) {
+        FrameBuffer b = new FrameBuffer(64);
+        for (byte[] p : payloads) b.putFrame(p);
+        return b.toByteArray();
+    }
+
+    private static byte[] bytes(ByteBuffer m) {
+        byte[] out = new byte[m.remaining()];
+        m.duplicate().get(out);
+        return out;
+    }
+
+    @Test public void readsFramesSplitAtEveryByte() throws IOException {
+        // 300 בתים - אורך varint של שני בתים, כך שגם ה-header נחתך באמצע
+        byte[] a = payload(3), b = payload(300), c = payload(0), d = payload(127), e = payload(128);
+        FrameReader r = new FrameReader(trickle(frames(a, b, c, d, e), 1), 4);
+        assertArrayEquals(a, bytes(r.next()));
+        assertArrayEquals(b, bytes(r.next()));
+        assertArrayEquals(c, bytes(r.next()));
+        assertArrayEquals(d, bytes(r.next()));
+        assertArrayEquals(e, bytes(r.next()));
+        assertNull(r.next());
+    }
+
+    @Test public void readsManyFramesFromOneRead() throws IOException {
+        byte[][] ps = new byte[50][];
+        for (int i = 0; i < ps.length; i++) ps[i] = payload(i * 7);
+        FrameReader r = new FrameReader(new ByteArrayInputStream(frames(ps)), 512);
+        for (byte[] p : ps) assertArrayEquals(p, bytes(r.next()));
+        assertNull(r.next());
+    }
+
+    @Test public void eofInsidePayloadReturnsNull() throws IOException {
+        byte[] s = frames(payload(10));
+        byte[] cut = new byte[s.length - 3];
+        System.arraycopy(s, 0, cut, 0, cut.length);
+        assertNull(new FrameReader(new ByteArrayInputStream(cut), 64).next());
+    }
+
+    @Test public void eofInsideLengthReturnsNull() throws IOException {
+        // 0x80 = varint שלא נגמר
+        assertNull(new FrameReader(new ByteArrayInputStream(new byte[]{(byte) 0x80}), 64).next());
+    }
+
+    @Test public void acceptsMaxFrame() throws IOException {
+        byte[] p = payload(FrameReader.MAX_FRAME);
+        FrameReader r = new FrameReader(trickle(frames(p), 1000), 16);
+        assertArrayEquals(p, bytes(r.next()));
+        assertNull(r.next());
+    }
+
+    @Test public void rejectsFrameOverMax() {
+        FrameBuffer b = new FrameBuffer(8);
+        b.putVarint(FrameReader.MAX_FRAME + 1);
+        try {
+            new FrameReader(new ByteArrayInputStream(b.toByteArray()), 64).next();
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test public void rejectsOverlongLengthVarint() {
+        byte[] junk = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+        try {
+            new FrameReader(new ByteArrayInputStream(junk), 64).next();
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test public void readVarintRoundTrip() throws IOException {
+        long[] vals = {0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, 1L << 40, Long.MAX_VALUE};
+        FrameBuffer b = new FrameBuffer(8);
+        for (long v : vals) {
+            int before = b.size();
+            b.putVarint(v);
+            assertEquals(FrameBuffer.varintSize(v), b.size() - before);
+        }
+        ByteBuffer in = ByteBuffer.wrap(b.toByteArray());
+        for (long v : vals) assertEquals(v, FrameReader.readVarint(in));
+        assertEquals(0, in.remaining());
+    }
+
+    @Test(expected = IOException.class)
+    public void readVarintTruncated() throws IOException {
+        FrameReader.readVarint(ByteBuffer.wrap(new byte[]{(byte) 0x80, (byte) 0x80}));
+    }
+}
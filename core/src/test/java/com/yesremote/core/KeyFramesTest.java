@@ -0,0 +1,56 @@
+package com.yesremote.core;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+public class KeyFramesTest {
+
+    private static byte[] written(int kc, int dir) {
+        FrameBuffer b = new FrameBuffer(16);
+        KeyFrames.write(kc, dir, b);
+        return b.toByteArray();
+    }
+
+    private static byte[] encoded(int kc, int dir) {
+        FrameBuffer b = new FrameBuffer(16);
+        KeyFrames.encode(kc, dir, b);
+        return b.toByteArray();
+    }
+
+    /** המסגרת שנבנית מ-RemoteProto, עם prefix אורך - הקידוד "הרגיל". */
+    private static byte[] viaProto(int kc, int dir) {
+        FrameBuffer b = new FrameBuffer(16);
+        b.putFrame(RemoteProto.keyInject(kc, dir));
+        return b.toByteArray();
+    }
+
+    @Test public void tableMatchesEncodeForAllKnownKeys() {
+        for (int dir = KeyFrames.DIR_START_LONG; dir <= KeyFrames.DIR_SHORT; dir++) {
+            for (int kc : KeyCodes.ALL) {
+                assertArrayEquals("kc=" + kc + " dir=" + dir, encoded(kc, dir), written(kc, dir));
+                assertArrayEquals("kc=" + kc + " dir=" + dir, viaProto(kc, dir), written(kc, dir));
+            }
+        }
+    }
+
+    @Test public void keysOutsideTableAreEncodedDirectly() {
+        int[] kcs = {0, 200, 255, 256, 300, 1000};
+        for (int kc : kcs) {
+            for (int dir = KeyFrames.DIR_START_LONG; dir <= KeyFrames.DIR_SHORT; dir++) {
+                assertArrayEquals("kc=" + kc, viaProto(kc, dir), written(kc, dir));
+            }
+        }
+    }
+
+    @Test public void appendsToExistingContent() {
+        FrameBuffer b = new FrameBuffer(4);
+        KeyFrames.write(KeyCodes.KEY_UP, KeyFrames.DIR_SHORT, b);
+        KeyFrames.write(KeyCodes.KEY_UP, KeyFrames.DIR_SHORT, b);
+        byte[] one = viaProto(KeyCodes.KEY_UP, KeyFrames.DIR_SHORT);
+        byte[] two = new byte[one.length * 2];
+        System.arraycopy(one, 0, two, 0, one.length);
+        System.arraycopy(one, 0, two, one.length, one.length);
+        assertArrayEquals(two, b.toByteArray());
+    }
+}
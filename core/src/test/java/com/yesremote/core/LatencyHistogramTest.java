@@ -0,0 +1,104 @@
+package com.yesremote.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    private static final int LAST = LatencyHistogram.index(Long.MAX_VALUE);
+
+    @Test public void smallValuesHaveExactBuckets() {
+        for (int v = 0; v < 16; v++) {
+            assertEquals(v, LatencyHistogram.index(v));
+            assertEquals(v, LatencyHistogram.lower(v));
+            assertEquals(v, LatencyHistogram.upper(v));
+        }
+        // מעל 15 - 8 דליים לכל חזקה של 2: 16..17, 18..19, ..., 30..31, 32..35
+        assertEquals(16, LatencyHistogram.index(16));
+        assertEquals(16, LatencyHistogram.index(17));
+        assertEquals(17, LatencyHistogram.index(18));
+        assertEquals(23, LatencyHistogram.index(31));
+        assertEquals(24, LatencyHistogram.index(32));
+        assertEquals(24, LatencyHistogram.index(35));
+    }
+
+    @Test public void bucketsAreContiguousUpToLongMax() {
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upper(LAST));
+        for (int i = 0; i < LAST; i++) {
+            long lo = LatencyHistogram.lower(i), hi = LatencyHistogram.upper(i);
+            assertEquals("lower " + i, i, LatencyHistogram.index(lo));
+            assertEquals("upper " + i, i, LatencyHistogram.index(hi));
+            assertEquals("gap after " + i, hi + 1, LatencyHistogram.lower(i + 1));
+            // רוחב דלי עד 1/8 מהגבול התחתון - שגיאה יחסית של עד 12.5%
+            if (lo >= 16) assertTrue("width " + i, (hi - lo + 1) * 8 <= lo);
+        }
+    }
+
+    @Test public void emptyHistogramReportsZero() {
+        LatencyHistogram h = new LatencyHistogram("t");
+        assertEquals(0, h.percentile(50));
+        assertEquals(0, h.percentile(99));
+        assertEquals(0, h.mean());
+        assertEquals(0, h.max());
+    }
+
+    @Test public void percentilesReportBucketUpperCappedAtMax() {
+        LatencyHistogram h = new LatencyHistogram("t");
+        for (int v = 1; v <= 100; v++) h.record(v);
+        assertEquals(100, h.count());
+        assertEquals(50, h.mean());
+        // 50 נופל בדלי 48..51
+        assertEquals(51, h.percentile(50));
+        // 99 בדלי 96..103, אבל לא מעל המקסימום שנראה
+        assertEquals(100, h.percentile(99));
+        assertEquals(100, h.percentile(100));
+        assertEquals(1, h.percentile(1));
+    }
+
+    @Test public void percentileWithinBucketErrorOfExact() {
+        LatencyHistogram h = new LatencyHistogram("t");
+        Random rnd = new Random(42);
+        long[] v = new long[10_000];
+        for (int i = 0; i < v.length; i++) {
+            // log-uniform בין 1us ל-10s, כמו זמני חיבור ומקשים
+            v[i] = (long) Math.exp(rnd.nextDouble() * Math.log(10_000_000));
+            h.record(v[i]);
+        }
+        Arrays.sort(v);
+        for (double p : new double[]{50, 90, 99, 99.9}) {
+            long exact = v[(int) Math.ceil(v.length * p / 100.0) - 1];
+            long got = h.percentile(p);
+            assertTrue("p" + p + " " + got + " < " + exact, got >= exact);
+            assertTrue("p" + p + " " + got + " vs " + exact, got <= exact + exact / 8 + 1);
+        }
+    }
+
+    @Test public void negativeAndNanosAndReset() {
+        LatencyHistogram h = new LatencyHistogram("t");
+        h.record(-5);
+        h.recordNanos(2_500_000);  // 2500us
+        assertEquals(2, h.count());
+        assertEquals(0, h.percentile(50));
+        assertEquals(2500, h.max());
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.max());
+        assertEquals(0, h.percentile(90));
+    }
+
+    @Test public void jsonListsNonEmptyBucketsByLowerBound() {
+        LatencyHistogram h = new LatencyHistogram("x");
+        for (int v = 48; v <= 51; v++) h.record(v);
+        h.record(3);
+        StringBuilder sb = new StringBuilder();
+        h.appendJson(sb);
+        String json = sb.toString();
+        assertTrue(json, json.startsWith("\"x\":{\"unit\":\"us\",\"count\":5,"));
+        assertTrue(json, json.endsWith("\"buckets\":[[3,1],[48,4]]}"));
+    }
+}
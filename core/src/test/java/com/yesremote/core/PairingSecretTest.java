@@ -0,0 +1,72 @@
+package com.yesremote.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class PairingSecretTest {
+
+    private static RSAPublicKey key(String modHex, long exp) throws GeneralSecurityException {
+        return (RSAPublicKey) KeyFactory.getInstance("RSA")
+            .generatePublic(new RSAPublicKeySpec(new BigInteger(modHex, 16), BigInteger.valueOf(exp)));
+    }
+
+    private static byte[] hex(String s) {
+        byte[] out = new byte[s.length() / 2];
+        for (int i = 0; i < out.length; i++) out[i] = (byte) Integer.parseInt(s.substring(i * 2, i * 2 + 2), 16);
+        return out;
+    }
+
+    // מודולוס 512 ביט עם הביט העליון דלוק - BigInteger.toByteArray מוסיף 0 מוביל שצריך להוריד
+    private static final String CLIENT_MOD = "c3a1f2e4d5b6978812345678deadbeef0badf00d11223344556677889900aabb"
+        + "0123456789abcdef0f1e2d3c4b5a69788796a5b4c3d2e1f1fedcba9876543211";
+    private static final String SERVER_MOD = "9f00e1d2c3b4a5968778695a4b3c2d1e0f1e2d3c4b5a69788796a5b4c3d2e1f1"
+        + "aabbccddeeff00112233445566778899deadbeefcafebabe0123456789abcdef";
+
+    @Test public void matchesHandComputedDigest() throws Exception {
+        RSAPublicKey client = key(CLIENT_MOD, 65537), server = key(SERVER_MOD, 65537);
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        sha.update(hex(CLIENT_MOD));
+        sha.update(hex("010001"));
+        sha.update(hex(SERVER_MOD));
+        sha.update(hex("010001"));
+        sha.update(hex("B2C3"));   // 4 התווים האחרונים של ה-PIN
+        assertArrayEquals(sha.digest(), PairingSecret.compute(client, server, "A1B2C3"));
+    }
+
+    @Test public void pinIsCaseInsensitiveAndOnlyLastFourCount() throws Exception {
+        RSAPublicKey client = key(CLIENT_MOD, 65537), server = key(SERVER_MOD, 3);
+        byte[] a = PairingSecret.compute(client, server, "A1B2C3");
+        assertArrayEquals(a, PairingSecret.compute(client, server, "a1b2c3"));
+        assertArrayEquals(a, PairingSecret.compute(client, server, "FFB2C3"));
+        assertFalse(Arrays.equals(a, PairingSecret.compute(client, server, "A1B2C4")));
+    }
+
+    @Test public void orderOfKeysMatters() throws Exception {
+        RSAPublicKey client = key(CLIENT_MOD, 65537), server = key(SERVER_MOD, 65537);
+        assertFalse(Arrays.equals(PairingSecret.compute(client, server, "123456"),
+                                  PairingSecret.compute(server, client, "123456")));
+    }
+
+    @Test public void unsignedStripsSignByte() {
+        assertArrayEquals(hex("ff"), PairingSecret.unsigned(BigInteger.valueOf(255)));
+        assertArrayEquals(hex("7f"), PairingSecret.unsigned(BigInteger.valueOf(127)));
+        assertArrayEquals(hex("010001"), PairingSecret.unsigned(BigInteger.valueOf(65537)));
+        assertEquals(64, PairingSecret.unsigned(new BigInteger(CLIENT_MOD, 16)).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortPinRejected() throws Exception {
+        PairingSecret.compute(key(CLIENT_MOD, 65537), key(SERVER_MOD, 65537), "ABC");
+    }
+}
@@ -0,0 +1,105 @@
+package com.yesremote.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RemoteProtoTest {
+
+    /** רושם כל callback כשורת טקסט. */
+    private static final class Recorder implements RemoteProto.Receiver {
+        final List<String> calls = new ArrayList<>();
+        @Override public void onConfigure(int code1)          { calls.add("configure " + code1); }
+        @Override public void onSetActive(int active)         { calls.add("set_active " + active); }
+        @Override public void onRemoteError(boolean value1)   { calls.add("error " + value1); }
+        @Override public void onPing(long val1)               { calls.add("ping " + val1); }
+        @Override public void onPingResponse(long val1)       { calls.add("pong " + val1); }
+        @Override public void onKeyInject(int kc, int dir)    { calls.add("key " + kc + " " + dir); }
+        @Override public void onVolume(int level, int max, boolean muted) { calls.add("volume " + level + "/" + max + " " + muted); }
+        @Override public void onImeBatchEdit(int ime, int field) { calls.add("ime_batch " + ime + " " + field); }
+        @Override public void onStart(boolean started)        { calls.add("start " + started); }
+        @Override public void onUnknown(int field, int size)  { calls.add("unknown " + field + " " + size); }
+    }
+
+    private static String decode(byte[] msg) throws IOException {
+        Recorder r = new Recorder();
+        RemoteProto.dispatch(ByteBuffer.wrap(msg), r);
+        assertEquals(1, r.calls.size());
+        return r.calls.get(0);
+    }
+
+    @Test public void configure() throws IOException {
+        assertEquals("configure 622", decode(RemoteProto.configure(RemoteProto.PROTOCOL_CODE, "androitv-remote", "1.0.0")));
+    }
+
+    @Test public void setActive() throws IOException {
+        assertEquals("set_active 622", decode(RemoteProto.setActive(RemoteProto.PROTOCOL_CODE)));
+    }
+
+    @Test public void pingAndPong() throws IOException {
+        assertEquals("ping 0", decode(RemoteProto.pingRequest(0)));
+        assertEquals("ping 123456789012", decode(RemoteProto.pingRequest(123456789012L)));
+        assertEquals("pong 42", decode(RemoteProto.pingResponse(42)));
+    }
+
+    @Test public void keyInject() throws IOException {
+        for (int dir = KeyFrames.DIR_START_LONG; dir <= KeyFrames.DIR_SHORT; dir++) {
+            assertEquals("key 24 " + dir, decode(RemoteProto.keyInject(KeyCodes.KEY_VOL_UP, dir)));
+            assertEquals("key 300 " + dir, decode(RemoteProto.keyInject(300, dir)));
+        }
+    }
+
+    @Test public void volume() throws IOException {
+        assertEquals("volume 7/100 false", decode(RemoteProto.setVolume(7, 100, false)));
+        assertEquals("volume 0/15 true", decode(RemoteProto.setVolume(0, 15, true)));
+    }
+
+    @Test public void startAndError() throws IOException {
+        assertEquals("start true", decode(RemoteProto.start(true)));
+        assertEquals("start false", decode(RemoteProto.start(false)));
+        assertEquals("error true", decode(RemoteProto.remoteError()));
+    }
+
+    @Test public void imeBatchEdit() throws IOException {
+        assertEquals("ime_batch 5 3", decode(RemoteProto.imeBatchEdit(5, 3, "שלום abc")));
+        assertEquals("ime_batch 0 0", decode(RemoteProto.imeBatchEdit(0, 0, "")));
+    }
+
+    @Test public void unknownFieldIsReportedAndSkipped() throws IOException {
+        byte[] link = RemoteProto.appLink("https://www.youtube.com");
+        byte[] ping = RemoteProto.pingRequest(9);
+        // שתי הודעות ברצף באותו באפר - השדה הלא מוכר לא שובר את הבא אחריו
+        byte[] both = new byte[link.length + ping.length];
+        System.arraycopy(link, 0, both, 0, link.length);
+        System.arraycopy(ping, 0, both, link.length, ping.length);
+        Recorder r = new Recorder();
+        RemoteProto.dispatch(ByteBuffer.wrap(both), r);
+        assertEquals(2, r.calls.size());
+        assertEquals("unknown " + RemoteProto.F_APP_LINK + " " + (2 + "https://www.youtube.com".length()), r.calls.get(0));
+        assertEquals("ping 9", r.calls.get(1));
+    }
+
+    @Test public void decodesFromViewInsideLargerBuffer() throws IOException {
+        // כמו FrameReader: position/limit על באפר משותף
+        byte[] msg = RemoteProto.setVolume(3, 50, true);
+        byte[] big = new byte[msg.length + 10];
+        System.arraycopy(msg, 0, big, 5, msg.length);
+        ByteBuffer view = ByteBuffer.wrap(big);
+        view.position(5).limit(5 + msg.length);
+        Recorder r = new Recorder();
+        RemoteProto.dispatch(view, r);
+        assertEquals("volume 3/50 true", r.calls.get(0));
+        assertEquals(5 + msg.length, view.position());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFieldThrows() throws IOException {
+        byte[] msg = RemoteProto.setVolume(3, 50, true);
+        RemoteProto.dispatch(ByteBuffer.wrap(msg, 0, msg.length - 2), new Recorder());
+    }
+}
@@ -0,0 +1,282 @@
+package com.yesremote.mocktv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLSocket;
+
+import com.yesremote.core.FrameBuffer;
+import com.yesremote.core.FrameReader;
+import com.yesremote.core.KeyCodes;
+import com.yesremote.core.KeyFrames;
+import com.yesremote.core.LatencyHistogram;
+import com.yesremote.core.PairingProto;
+import com.yesremote.core.PairingSecret;
+import com.yesremote.core.RemoteProto;
+
+/**
+ * מריץ הרבה sessions במקביל מול TV (מדומה או אמיתי), כל אחד כמו TvClient:
+ * TLS → configure/set_active → מקשים בקצב קבוע (SHORT אחד ללחיצה, או START_LONG+END_LONG
+ * ב-pressPair - כמו PRESS_SHORT/PRESS_PAIR של TvClient), תשובה ל-ping,
+ * ו-reconnect עם backoff אחרי ניתוק.
+ * מודד: keys/sec, זמן connect, RTT של מקש עוצמה (עד set_volume), וזמן התאוששות
+ * מרגע הניתוק עד שה-session שוב פעיל.
+ */
+public final class LoadHarness {
+
+    public static final class Config {
+        public String host = "127.0.0.1";
+        public int    remotePort = 6466, pairingPort = 6467;
+        public String pin = "A1B2C3";
+        public boolean pair = true;         // pairing אחד בהתחלה (תעודה משותפת לכל ה-sessions)
+        public int    sessions = 20;
+        public double keysPerSec = 10;      // לכל session
+        public int    probeEvery = 10;      // כל מקש N הוא VOL_UP/VOL_DOWN למדידת RTT
+        public boolean pressPair = false;   // START_LONG+END_LONG במקום SHORT, כמו PRESS_PAIR
+        public long   durationMs = 10_000;
+        public long   backoffMs = 100, backoffMaxMs = 2_000;
+        public int    connectTimeoutMs = 5_000;
+    }
+
+    private static final int[] KEYS = {
+        KeyCodes.KEY_UP, KeyCodes.KEY_DOWN, KeyCodes.KEY_LEFT, KeyCodes.KEY_RIGHT, KeyCodes.KEY_OK,
+        KeyCodes.KEY_CH_UP, KeyCodes.KEY_CH_DOWN, KeyCodes.KEY_BACK,
+    };
+
+    public final LatencyHistogram connect  = new LatencyHistogram("connect");
+    public final LatencyHistogram keyRtt   = new LatencyHistogram("vol_key_rtt");
+    public final LatencyHistogram recovery = new LatencyHistogram("reconnect_recovery");
+    public final AtomicLong keysSent = new AtomicLong(), connects = new AtomicLong(),
+        failures = new AtomicLong(), lost = new AtomicLong(), pongs = new AtomicLong(),
+        probesLost = new AtomicLong();
+    public long pairMs = -1;
+
+    private static final long PROBE_TIMEOUT_NS = 2_000_000_000L;
+
+    private final Config cfg;
+    private final Tls tls;
+    private volatile boolean running;
+    private long startNs, endNs;
+
+    public LoadHarness(Config cfg) throws GeneralSecurityException {
+        this.cfg = cfg;
+        this.tls = new Tls("YesRemoteLoad");
+    }
+
+    /** מריץ את העומס עד durationMs וחוזר. */
+    public void run() throws IOException, GeneralSecurityException, InterruptedException {
+        if (cfg.pair) pair();
+        running = true;
+        List<Thread> threads = new ArrayList<>();
+        startNs = System.nanoTime();
+        for (int i = 0; i < cfg.sessions; i++) {
+            Session s = new Session();
+            Thread t = new Thread(s::loop, "load-" + i);
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+        Thread.sleep(cfg.durationMs);
+        running = false;
+        endNs = System.nanoTime();
+        for (Thread t : threads) t.interrupt();
+        for (Thread t : threads) t.join(2_000);
+    }
+
+    /** pairing כמו TvPairing: request → option → configuration → secret. */
+    private void pair() throws IOException, GeneralSecurityException {
+        long t0 = System.nanoTime();
+        try (SSLSocket s = open(cfg.pairingPort)) {
+            FrameReader in = new FrameReader(s.getInputStream(), 512);
+            OutputStream out = s.getOutputStream();
+            exchange(in, out, PairingProto.pairingRequest("atvremote", "YesRemoteLoad"));
+            exchange(in, out, PairingProto.options());
+            exchange(in, out, PairingProto.configuration());
+            RSAPublicKey server = (RSAPublicKey) s.getSession().getPeerCertificates()[0].getPublicKey();
+            byte[] secret = PairingSecret.compute((RSAPublicKey) tls.cert.getPublicKey(), server, cfg.pin);
+            exchange(in, out, PairingProto.secret(secret));
+        }
+        pairMs = (System.nanoTime() - t0) / 1_000_000;
+    }
+
+    private static void exchange(FrameReader in, OutputStream out, byte[] msg) throws IOException {
+        FrameBuffer b = new FrameBuffer(msg.length + 5);
+        b.putFrame(msg);
+        b.writeTo(out);
+        out.flush();
+        ByteBuffer m = in.next();
+        if (m == null) throw new IOException("pairing: connection closed");
+        int status = PairingProto.status(m);
+        if (status != PairingProto.STATUS_OK) throw new IOException("pairing: status " + status);
+    }
+
+    private SSLSocket open(int port) throws IOException {
+        SSLSocket s = (SSLSocket) tls.ctx.getSocketFactory().createSocket();
+        s.connect(new InetSocketAddress(cfg.host, port), cfg.connectTimeoutMs);
+        s.setTcpNoDelay(true);
+        s.setSoTimeout(cfg.connectTimeoutMs);
+        s.startHandshake();
+        return s;
+    }
+
+    private final class Session implements RemoteProto.Receiver {
+        private SSLSocket    sock;
+        private OutputStream out;
+        private final FrameBuffer buf = new FrameBuffer(64);
+        private FrameReader  in;
+        private volatile boolean ready;
+        private volatile long probeNs;     // מקש עוצמה שעוד לא קיבל set_volume, 0 = אין
+        private long lostNs;               // רגע הניתוק האחרון, 0 = מחובר או עוד לא התחבר
+
+        void loop() {
+            long backoff = cfg.backoffMs;
+            while (running) {
+                boolean up = false;
+                try {
+                    long t0 = System.nanoTime();
+                    connectOnce();
+                    long now = System.nanoTime();
+                    connect.recordNanos(now - t0);
+                    connects.incrementAndGet();
+                    if (lostNs != 0) { recovery.recordNanos(now - lostNs); lostNs = 0; }
+                    up = true;
+                    backoff = cfg.backoffMs;
+                    Thread reader = new Thread(this::readLoop, Thread.currentThread().getName() + "-rd");
+                    reader.setDaemon(true);
+                    reader.start();
+                    sendLoop();
+                } catch (IOException | InterruptedException e) {
+                    if (!running) break;
+                    if (!up) failures.incrementAndGet();
+                } finally {
+                    if (sock != null) try { sock.close(); } catch (IOException ignored) {}
+                }
+                if (!running) break;
+                // ניתוק - מכאן סופרים זמן התאוששות
+                if (up) { lostNs = System.nanoTime(); lost.incrementAndGet(); }
+                ready = false;
+                probeNs = 0;
+                try { Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1)); }
+                catch (InterruptedException e) { break; }
+                backoff = Math.min(cfg.backoffMaxMs, backoff * 2);
+            }
+        }
+
+        /** TLS + handshake של ה-remote, כמו RemoteHandshake. */
+        private void connectOnce() throws IOException {
+            sock = open(cfg.remotePort);
+            out = sock.getOutputStream();
+            in = new FrameReader(sock.getInputStream(), 1024);
+            while (!ready) {
+                ByteBuffer m = in.next();
+                if (m == null) throw new IOException("closed during handshake");
+                RemoteProto.dispatch(m, this);
+            }
+            sock.setSoTimeout(0);
+        }
+
+        private void readLoop() {
+            try {
+                ByteBuffer m;
+                while ((m = in.next()) != null) RemoteProto.dispatch(m, this);
+            } catch (IOException ignored) {
+            } finally {
+                ready = false;
+                try { sock.close(); } catch (IOException ignored) {}
+            }
+        }
+
+        private void sendLoop() throws IOException, InterruptedException {
+            long periodNs = (long) (1e9 / cfg.keysPerSec);
+            long next = System.nanoTime();
+            int n = 0;
+            boolean up = true;
+            while (running && ready) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                next += periodNs;
+                int kc;
+                long p = probeNs;
+                // set_volume שלא הגיע (מקש שהושלך) - מוותרים על הדגימה
+                if (p != 0 && System.nanoTime() - p > PROBE_TIMEOUT_NS) { probesLost.incrementAndGet(); probeNs = p = 0; }
+                if (++n % cfg.probeEvery == 0 && p == 0) {
+                    kc = up ? KeyCodes.KEY_VOL_UP : KeyCodes.KEY_VOL_DOWN;
+                    up = !up;
+                    probeNs = System.nanoTime();
+                } else {
+                    kc = KEYS[n % KEYS.length];
+                }
+                synchronized (buf) {
+                    buf.reset();
+                    if (cfg.pressPair) {
+                        KeyFrames.write(kc, KeyFrames.DIR_START_LONG, buf);
+                        KeyFrames.write(kc, KeyFrames.DIR_END_LONG, buf);
+                    } else {
+                        KeyFrames.write(kc, KeyFrames.DIR_SHORT, buf);
+                    }
+                    buf.writeTo(out);
+                    out.flush();
+                }
+                keysSent.incrementAndGet();
+            }
+            if (running) throw new IOException("connection lost");
+        }
+
+        private void write(byte[] msg) throws IOException {
+            synchronized (buf) {
+                buf.reset();
+                buf.putFrame(msg);
+                buf.writeTo(out);
+                out.flush();
+            }
+        }
+
+        private void writeQuietly(byte[] msg) {
+            try { write(msg); } catch (IOException e) { try { sock.close(); } catch (IOException ignored) {} }
+        }
+
+        @Override public void onConfigure(int code1) {
+            writeQuietly(RemoteProto.configure(RemoteProto.PROTOCOL_CODE, "androitv-remote", "1.0.0"));
+        }
+
+        @Override public void onSetActive(int active) {
+            writeQuietly(RemoteProto.setActive(RemoteProto.PROTOCOL_CODE));
+            ready = true;
+        }
+
+        @Override public void onPing(long val1) {
+            pongs.incrementAndGet();
+            writeQuietly(RemoteProto.pingResponse(val1));
+        }
+
+        @Override public void onVolume(int level, int max, boolean muted) {
+            long p = probeNs;
+            if (p != 0) { keyRtt.recordNanos(System.nanoTime() - p); probeNs = 0; }
+        }
+    }
+
+    public String report() {
+        double secs = Math.max(1, endNs - startNs) / 1e9;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("sessions=%d duration=%.1fs keys=%d keys/sec=%.0f press=%s%n",
+            cfg.sessions, secs, keysSent.get(), keysSent.get() / secs, cfg.pressPair ? "pair" : "short"));
+        sb.append("connects=").append(connects).append(" failures=").append(failures)
+          .append(" disconnects=").append(lost).append(" pongs=").append(pongs)
+          .append(" probes_lost=").append(probesLost);
+        if (pairMs >= 0) sb.append(" pair_ms=").append(pairMs);
+        sb.append('\n');
+        LatencyHistogram.appendHeader(sb);
+        connect.appendText(sb);
+        keyRtt.appendText(sb);
+        recovery.appendText(sb);
+        return sb.toString();
+    }
+}
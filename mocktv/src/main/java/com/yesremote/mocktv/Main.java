@@ -0,0 +1,140 @@
+package com.yesremote.mocktv;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.yesremote.core.CaptureReader;
+import com.yesremote.core.CaptureReplay;
+import com.yesremote.core.RemoteProto;
+
+/**
+ * שורת פקודה:
+ *   server  - TV מדומה על 6466/6467 עד Ctrl-C
+ *   load    - harness מול TV קיים (--host)
+ *   bench   - שניהם באותו תהליך, על פורטים פנויים
+ *   replay  - הקלטה של FrameCapture: סיכום, dump, decode, ושליחה ל-TV מדומה
+ * אפשרויות בצורת --key=value (ראה usage()).
+ */
+public final class Main {
+    private Main() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) { usage(); return; }
+        Map<String, String> o = options(args);
+        switch (args[0]) {
+            case "server": {
+                MockTv tv = new MockTv(tvConfig(o, false));
+                MockTv.log("listening remote=" + tv.remotePort() + " pairing=" + tv.pairingPort() + " pin=" + tv.cfg.pin);
+                while (true) {
+                    Thread.sleep(10_000);
+                    MockTv.log(tv.stats.toText());
+                }
+            }
+            case "load": {
+                LoadHarness h = new LoadHarness(loadConfig(o));
+                h.run();
+                System.out.print(h.report());
+                break;
+            }
+            case "bench": {
+                try (MockTv tv = new MockTv(tvConfig(o, true))) {
+                    LoadHarness.Config lc = loadConfig(o);
+                    lc.host = "127.0.0.1";
+                    lc.remotePort = tv.remotePort();
+                    lc.pairingPort = tv.pairingPort();
+                    lc.pin = tv.cfg.pin;
+                    LoadHarness h = new LoadHarness(lc);
+                    h.run();
+                    System.out.print(h.report());
+                    System.out.println("tv: " + tv.stats.toText());
+                }
+                break;
+            }
+            case "replay": {
+                String path = o.get("capture");
+                if (path == null || path.isEmpty()) { usage(); return; }
+                List<CaptureReader.Record> recs = CaptureReader.load(new File(path));
+                System.out.println(CaptureReplay.summary(recs));
+                if (o.containsKey("dump")) CaptureReplay.dump(recs, System.out);
+                int iterations = num(o, "decode", 0);
+                if (iterations > 0) {
+                    RemoteProto.Receiver nop = new RemoteProto.Receiver() {};
+                    CaptureReplay.decode(recs, nop, Math.min(iterations, 10));  // warmup
+                    System.out.println("decode: " + CaptureReplay.decode(recs, nop, iterations));
+                }
+                if (!o.containsKey("no-tv")) {
+                    try (MockTv tv = new MockTv(tvConfig(o, true))) {
+                        System.out.println(Replay.toTv(recs, tv, o.containsKey("realtime"), num(o, "settle-ms", 500)));
+                    }
+                }
+                break;
+            }
+            default: usage();
+        }
+    }
+
+    private static MockTv.Config tvConfig(Map<String, String> o, boolean ephemeral) {
+        MockTv.Config c = new MockTv.Config();
+        c.remotePort       = num(o, "port", ephemeral ? 0 : c.remotePort);
+        c.pairingPort      = num(o, "pairing-port", ephemeral ? 0 : c.pairingPort);
+        c.pin              = o.getOrDefault("pin", c.pin);
+        c.pingMs           = num(o, "ping-ms", c.pingMs);
+        c.latencyMs        = num(o, "latency-ms", 0);
+        c.jitterMs         = num(o, "jitter-ms", 0);
+        c.drop             = dbl(o, "drop", 0);
+        c.disconnectMeanMs = num(o, "disconnect-mean-ms", 0);
+        c.refuse           = dbl(o, "refuse", 0);
+        c.requirePaired    = o.containsKey("require-paired");
+        return c;
+    }
+
+    private static LoadHarness.Config loadConfig(Map<String, String> o) {
+        LoadHarness.Config c = new LoadHarness.Config();
+        c.host        = o.getOrDefault("host", c.host);
+        c.remotePort  = num(o, "port", c.remotePort);
+        c.pairingPort = num(o, "pairing-port", c.pairingPort);
+        c.pin         = o.getOrDefault("pin", c.pin);
+        c.pair        = !o.containsKey("no-pair");
+        c.sessions    = num(o, "sessions", c.sessions);
+        c.keysPerSec  = dbl(o, "rate", c.keysPerSec);
+        c.durationMs  = num(o, "duration-s", c.durationMs / 1000) * 1000L;
+        String press  = o.getOrDefault("press-mode", "short");
+        if (!press.equals("short") && !press.equals("pair")) throw new IllegalArgumentException("bad --press-mode: " + press);
+        c.pressPair   = press.equals("pair");
+        return c;
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> o = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String a = args[i];
+            if (!a.startsWith("--")) throw new IllegalArgumentException("bad option: " + a);
+            int eq = a.indexOf('=');
+            if (eq < 0) o.put(a.substring(2), "");
+            else o.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        return o;
+    }
+
+    private static int num(Map<String, String> o, String k, long def) {
+        String v = o.get(k);
+        return v == null ? (int) def : Integer.parseInt(v);
+    }
+
+    private static double dbl(Map<String, String> o, String k, double def) {
+        String v = o.get(k);
+        return v == null ? def : Double.parseDouble(v);
+    }
+
+    private static void usage() {
+        System.out.println(
+            "usage: server|load|bench|replay [options]\n"
+          + "  tv:   --port=6466 --pairing-port=6467 --pin=A1B2C3 --ping-ms=5000\n"
+          + "        --latency-ms=0 --jitter-ms=0 --drop=0.0 --disconnect-mean-ms=0 --refuse=0.0 --require-paired\n"
+          + "  load: --host=127.0.0.1 --sessions=20 --rate=10 (keys/sec per session) --duration-s=10 --no-pair\n"
+          + "        --press-mode=short|pair\n"
+          + "  replay: --capture=<dir|capture-N.bin> --dump --decode=N --realtime --settle-ms=500 --no-tv");
+    }
+}
@@ -0,0 +1,324 @@
+package com.yesremote.mocktv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
+import com.yesremote.core.FrameBuffer;
+import com.yesremote.core.FrameReader;
+import com.yesremote.core.KeyCodes;
+import com.yesremote.core.KeyFrames;
+import com.yesremote.core.PairingProto;
+import com.yesremote.core.PairingSecret;
+import com.yesremote.core.RemoteProto;
+
+/**
+ * Android TV מדומה: pairing על 6467 ו-remote על 6466, שניהם TLS עם תעודת שרת self-signed.
+ * remote: configure → set_active → start + volume, ping כל pingMs, ו-set_volume כתשובה
+ * למקשי עוצמה (כמו TV אמיתי - זה ה-ack היחיד שיש למקש).
+ * תקלות: השהיה לפני טיפול בכל הודעה נכנסת, השלכת הודעות, ניתוק אקראי וסירוב חיבור.
+ */
+public final class MockTv implements Closeable {
+
+    public static final class Config {
+        public int     remotePort = 6466, pairingPort = 6467;
+        public String  name = "MockTV";
+        public String  pin = "A1B2C3";
+        public long    pingMs = 5_000;
+        public int     missedPings = 3;          // ping-ים בלי תשובה עד ניתוק
+        public long    latencyMs, jitterMs;      // לכל הודעה נכנסת
+        public double  drop;                     // הסתברות להשליך הודעה אחרי ה-handshake
+        public long    disconnectMeanMs;         // זמן ממוצע (אקספוננציאלי) עד ניתוק יזום, 0 = אף פעם
+        public double  refuse;                   // הסתברות לסגור חיבור מיד אחרי accept
+        public boolean requirePaired;            // remote רק לתעודות שעברו pairing
+    }
+
+    /** מונים - נקראים מכל thread. */
+    public static final class Stats {
+        public final AtomicLong sessions = new AtomicLong(), active = new AtomicLong(),
+            keys = new AtomicLong(), pings = new AtomicLong(), pongs = new AtomicLong(),
+            dropped = new AtomicLong(), disconnects = new AtomicLong(), refused = new AtomicLong(),
+            paired = new AtomicLong(), pairFailed = new AtomicLong();
+
+        public String toText() {
+            return "sessions=" + sessions + " active=" + active + " keys=" + keys
+                + " pings=" + pings + " pongs=" + pongs + " dropped=" + dropped
+                + " disconnects=" + disconnects + " refused=" + refused
+                + " paired=" + paired + " pair_failed=" + pairFailed;
+        }
+    }
+
+    public final Config cfg;
+    public final Stats  stats = new Stats();
+    private final Tls tls;
+    private final ServerSocket remoteServer, pairingServer;
+    private final ExecutorService conns = Executors.newCachedThreadPool(daemon("mocktv-conn"));
+    private final ScheduledExecutorService timers = Executors.newScheduledThreadPool(2, daemon("mocktv-timer"));
+    // טביעות SHA-256 של תעודות client שעברו pairing
+    private final Set<String> pairedCerts = ConcurrentHashMap.newKeySet();
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    public MockTv(Config cfg) throws IOException, GeneralSecurityException {
+        this.cfg = cfg;
+        this.tls = new Tls(cfg.name);
+        remoteServer  = listen(cfg.remotePort);
+        pairingServer = listen(cfg.pairingPort);
+        conns.execute(() -> acceptLoop(remoteServer, this::remoteSession));
+        conns.execute(() -> acceptLoop(pairingServer, this::pairingSession));
+    }
+
+    public int remotePort()  { return remoteServer.getLocalPort(); }
+    public int pairingPort() { return pairingServer.getLocalPort(); }
+
+    /** מנתק את כל החיבורים הפתוחים (למדידת התאוששות). */
+    public void disconnectAll() {
+        for (Socket s : open) closeQuietly(s);
+    }
+
+    @Override public void close() {
+        closed = true;
+        closeQuietly(remoteServer);
+        closeQuietly(pairingServer);
+        disconnectAll();
+        timers.shutdownNow();
+        conns.shutdownNow();
+    }
+
+    private SSLServerSocket listen(int port) throws IOException {
+        SSLServerSocket s = (SSLServerSocket) tls.ctx.getServerSocketFactory()
+            .createServerSocket(port, 256, InetAddress.getByName("0.0.0.0"));
+        // ה-client מציג את התעודה שלו; pairing מחשב ממנה את ה-secret
+        s.setWantClientAuth(true);
+        return s;
+    }
+
+    private interface Handler { void run(SSLSocket s) throws IOException, GeneralSecurityException; }
+
+    private void acceptLoop(ServerSocket server, Handler h) {
+        while (!closed) {
+            final Socket s;
+            try { s = server.accept(); } catch (IOException e) { if (!closed) log("accept: " + e); return; }
+            if (cfg.refuse > 0 && ThreadLocalRandom.current().nextDouble() < cfg.refuse) {
+                stats.refused.incrementAndGet();
+                closeQuietly(s);
+                continue;
+            }
+            conns.execute(() -> {
+                open.add(s);
+                try {
+                    s.setTcpNoDelay(true);
+                    ((SSLSocket) s).startHandshake();
+                    h.run((SSLSocket) s);
+                } catch (IOException | GeneralSecurityException e) {
+                    if (!closed && !s.isClosed()) log("session: " + e);
+                } finally {
+                    open.remove(s);
+                    closeQuietly(s);
+                }
+            });
+        }
+    }
+
+    // ---- pairing (6467) ----
+
+    private void pairingSession(SSLSocket s) throws IOException, GeneralSecurityException {
+        FrameReader in = new FrameReader(s.getInputStream(), 512);
+        OutputStream out = s.getOutputStream();
+        ByteBuffer m;
+        while ((m = in.next()) != null) {
+            delay();
+            switch (PairingProto.field(m)) {
+                case PairingProto.REQUEST:       send(out, PairingProto.requestAck(cfg.name)); break;
+                case PairingProto.OPTION:        send(out, PairingProto.options()); break;
+                case PairingProto.CONFIGURATION:
+                    log("pairing: PIN " + cfg.pin);
+                    send(out, PairingProto.configurationAck());
+                    break;
+                case PairingProto.SECRET: {
+                    byte[] got = PairingProto.secretOf(m);
+                    Certificate[] peer = s.getSession().getPeerCertificates();
+                    byte[] want = PairingSecret.compute((RSAPublicKey) peer[0].getPublicKey(),
+                        (RSAPublicKey) tls.cert.getPublicKey(), cfg.pin);
+                    if (got != null && MessageDigest.isEqual(got, want)) {
+                        pairedCerts.add(fingerprint(peer[0]));
+                        stats.paired.incrementAndGet();
+                        send(out, PairingProto.secretAck(want));
+                    } else {
+                        stats.pairFailed.incrementAndGet();
+                        send(out, PairingProto.error(PairingProto.STATUS_BAD_SECRET));
+                    }
+                    return;
+                }
+                default:
+                    send(out, PairingProto.error(PairingProto.STATUS_ERROR));
+                    return;
+            }
+        }
+    }
+
+    // ---- remote (6466) ----
+
+    private void remoteSession(SSLSocket s) throws IOException, GeneralSecurityException {
+        if (cfg.requirePaired) {
+            Certificate[] peer;
+            try { peer = s.getSession().getPeerCertificates(); }
+            catch (IOException e) { peer = null; }
+            if (peer == null || !pairedCerts.contains(fingerprint(peer[0]))) {
+                stats.refused.incrementAndGet();
+                return;
+            }
+        }
+        new RemoteSession(s).run();
+    }
+
+    private final class RemoteSession implements RemoteProto.Receiver {
+        final SSLSocket    sock;
+        final OutputStream out;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicLong    pingSeq = new AtomicLong();
+        int  stage;          // 0 = מחכה ל-configure, 1 = ל-set_active, 2 = פעיל
+        int  volume = 5;
+        boolean muted;
+        ScheduledFuture<?> pinger, killer;
+
+        RemoteSession(SSLSocket sock) throws IOException {
+            this.sock = sock;
+            this.out  = sock.getOutputStream();
+        }
+
+        void run() throws IOException {
+            stats.sessions.incrementAndGet();
+            stats.active.incrementAndGet();
+            try {
+                FrameReader in = new FrameReader(sock.getInputStream(), 1024);
+                send(out, RemoteProto.configure(RemoteProto.PROTOCOL_CODE, cfg.name, "1.0"));
+                ByteBuffer m;
+                while ((m = in.next()) != null) {
+                    delay();
+                    if (stage == 2 && cfg.drop > 0 && ThreadLocalRandom.current().nextDouble() < cfg.drop) {
+                        stats.dropped.incrementAndGet();
+                        continue;
+                    }
+                    RemoteProto.dispatch(m, this);
+                }
+            } finally {
+                stats.active.decrementAndGet();
+                if (pinger != null) pinger.cancel(false);
+                if (killer != null) killer.cancel(false);
+            }
+        }
+
+        @Override public void onConfigure(int code1) {
+            if (stage != 0) return;
+            stage = 1;
+            write(RemoteProto.setActive(RemoteProto.PROTOCOL_CODE));
+        }
+
+        @Override public void onSetActive(int active) {
+            if (stage != 1) return;
+            stage = 2;
+            write(RemoteProto.start(true));
+            write(RemoteProto.setVolume(volume, 100, muted));
+            pinger = timers.scheduleAtFixedRate(this::ping, cfg.pingMs, cfg.pingMs, TimeUnit.MILLISECONDS);
+            if (cfg.disconnectMeanMs > 0) {
+                long after = (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * cfg.disconnectMeanMs);
+                killer = timers.schedule(() -> {
+                    stats.disconnects.incrementAndGet();
+                    closeQuietly(sock);
+                }, after, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @Override public void onPingResponse(long val1) {
+            stats.pongs.incrementAndGet();
+            outstanding.set(0);
+        }
+
+        @Override public void onKeyInject(int kc, int dir) {
+            // לחיצה = START_LONG או SHORT; END_LONG רק משחרר
+            if (dir == KeyFrames.DIR_END_LONG) return;
+            stats.keys.incrementAndGet();
+            switch (kc) {
+                case KeyCodes.KEY_VOL_UP:   volume = Math.min(100, volume + 1); muted = false; break;
+                case KeyCodes.KEY_VOL_DOWN: volume = Math.max(0, volume - 1); muted = false; break;
+                case KeyCodes.KEY_MUTE:     muted = !muted; break;
+                default: return;
+            }
+            write(RemoteProto.setVolume(volume, 100, muted));
+        }
+
+        void ping() {
+            if (outstanding.incrementAndGet() > cfg.missedPings) {
+                log("no pong - closing");
+                closeQuietly(sock);
+                return;
+            }
+            stats.pings.incrementAndGet();
+            write(RemoteProto.pingRequest(pingSeq.incrementAndGet()));
+        }
+
+        void write(byte[] msg) {
+            try { send(out, msg); } catch (IOException e) { closeQuietly(sock); }
+        }
+    }
+
+    // ---- עזר ----
+
+    private static void send(OutputStream out, byte[] msg) throws IOException {
+        FrameBuffer b = new FrameBuffer(msg.length + 5);
+        b.putFrame(msg);
+        synchronized (out) {
+            b.writeTo(out);
+            out.flush();
+        }
+    }
+
+    private void delay() {
+        long ms = cfg.latencyMs;
+        if (cfg.jitterMs > 0) ms += ThreadLocalRandom.current().nextLong(cfg.jitterMs + 1);
+        if (ms <= 0) return;
+        try { Thread.sleep(ms); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    private static String fingerprint(Certificate c) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(c.getEncoded()));
+    }
+
+    static java.util.concurrent.ThreadFactory daemon(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static void closeQuietly(Closeable c) {
+        try { c.close(); } catch (IOException ignored) {}
+    }
+
+    static void log(String s) { System.err.println("[mocktv] " + s); }
+}
@@ -0,0 +1,57 @@
+package com.yesremote.mocktv;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLSocket;
+
+import com.yesremote.core.CaptureFormat;
+import com.yesremote.core.CaptureReader;
+import com.yesremote.core.CaptureReplay;
+import com.yesremote.core.FrameReader;
+import com.yesremote.core.RemoteProto;
+
+/**
+ * הקלטה של FrameCapture מול MockTv: המסגרות שהאפליקציה שלחה ל-remote (6466) נכתבות
+ * ל-TV המדומה דרך CaptureReplay.pump, ומה שה-TV עונה מפוענח ב-FrameReader + RemoteProto
+ * כמו ב-TvClient. כך הקלטה מהשטח הופכת לבדיקת רגרסיה של שני הצדדים בלי TV אמיתי.
+ */
+final class Replay {
+    private Replay() {}
+
+    /** @return שורת סיכום: כמה מסגרות נשלחו, כמה חזרו, ומוני ה-TV */
+    static String toTv(List<CaptureReader.Record> recs, MockTv tv, boolean realtime, long settleMs)
+            throws IOException, GeneralSecurityException, InterruptedException {
+        Tls tls = new Tls("YesRemoteReplay");
+        AtomicLong back = new AtomicLong(), volumes = new AtomicLong();
+        long t0 = System.nanoTime();
+        int sent;
+        try (SSLSocket s = (SSLSocket) tls.ctx.getSocketFactory().createSocket()) {
+            s.connect(new InetSocketAddress("127.0.0.1", tv.remotePort()), 5_000);
+            s.setTcpNoDelay(true);
+            s.startHandshake();
+            RemoteProto.Receiver decoder = new RemoteProto.Receiver() {
+                @Override public void onVolume(int level, int max, boolean muted) { volumes.incrementAndGet(); }
+            };
+            Thread reader = new Thread(() -> {
+                try {
+                    FrameReader in = new FrameReader(s.getInputStream(), 1024);
+                    ByteBuffer m;
+                    while ((m = in.next()) != null) { back.incrementAndGet(); RemoteProto.dispatch(m, decoder); }
+                } catch (IOException ignored) {}
+            }, "replay-rd");
+            reader.setDaemon(true);
+            reader.start();
+            sent = CaptureReplay.pump(recs, CaptureFormat.SRC_REMOTE, CaptureFormat.DIR_OUT, s.getOutputStream(), realtime);
+            // התשובות האחרונות (set_volume למקשי עוצמה) עוד בדרך
+            Thread.sleep(settleMs);
+        }
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        return "replay: sent=" + sent + " frames_back=" + back + " set_volume=" + volumes + " in " + ms + "ms\n"
+            + "tv: " + tv.stats.toText();
+    }
+}
@@ -0,0 +1,41 @@
+package com.yesremote.mocktv;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import com.yesremote.core.SelfSignedCert;
+
+/** מפתח + תעודה self-signed ו-SSLContext שסומך על כולם - כמו ה-TV וכמו האפליקציה. */
+final class Tls {
+    static final TrustManager[] TRUST_ALL = { new X509TrustManager() {
+        public void checkClientTrusted(X509Certificate[] c, String a) {}
+        public void checkServerTrusted(X509Certificate[] c, String a) {}
+        public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
+    }};
+
+    final KeyPair         keys;
+    final X509Certificate cert;
+    final SSLContext      ctx;
+
+    Tls(String cn) throws GeneralSecurityException {
+        SecureRandom rnd = new SecureRandom();
+        keys = SelfSignedCert.generateKeyPair(rnd);
+        cert = SelfSignedCert.create(keys, cn, rnd);
+        KeyStore ks = KeyStore.getInstance("PKCS12");
+        try { ks.load(null, null); } catch (java.io.IOException e) { throw new GeneralSecurityException(e); }
+        ks.setKeyEntry("k", keys.getPrivate(), new char[0], new Certificate[]{cert});
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ks, new char[0]);
+        ctx = SSLContext.getInstance("TLS");
+        ctx.init(kmf.getKeyManagers(), TRUST_ALL, rnd);
+    }
+}